@@ -1,16 +1,24 @@
 package com.jjcdutra2015.libraryapi;
 
-import org.modelmapper.ModelMapper;
+import com.jjcdutra2015.libraryapi.api.mapper.BookMapper;
+import com.jjcdutra2015.libraryapi.api.mapper.LoanMapper;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class LibraryApiApplication {
 
 	@Bean
-	public ModelMapper modelMapper() {
-		return new ModelMapper();
+	public BookMapper bookMapper() {
+		return new BookMapper();
+	}
+
+	@Bean
+	public LoanMapper loanMapper(BookMapper bookMapper) {
+		return new LoanMapper(bookMapper);
 	}
 
 	public static void main(String[] args) {
@@ -2,6 +2,7 @@ package com.jjcdutra2015.libraryapi.api;
 
 import com.jjcdutra2015.libraryapi.api.exception.ApiErrors;
 import com.jjcdutra2015.libraryapi.exception.BusinessException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
@@ -27,6 +28,12 @@ public class AplicationControllerAdvice {
         return new ApiErrors(ex);
     }
 
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ApiErrors handleOptimisticLockingFailureException(OptimisticLockingFailureException ex) {
+        return new ApiErrors("Resource was modified concurrently, reload and retry");
+    }
+
     @ExceptionHandler(ResponseStatusException.class)
     public ResponseEntity handleResponseStatusException(ResponseStatusException ex) {
         return new ResponseEntity(new ApiErrors(ex), ex.getStatus());
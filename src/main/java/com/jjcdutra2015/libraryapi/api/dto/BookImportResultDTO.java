@@ -0,0 +1,22 @@
+package com.jjcdutra2015.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookImportResultDTO {
+
+    private int created;
+    private int failed;
+
+    @Builder.Default
+    private List<BookImportItemDTO> items = new ArrayList<>();
+}
@@ -0,0 +1,23 @@
+package com.jjcdutra2015.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class LoanBatchItemDTO {
+
+    public enum Status {
+        CREATED, RETURNED, UPDATED, NOT_FOUND, ALREADY_LOANED, INVALID
+    }
+
+    private int index;
+    private Long id;
+    private String isbn;
+    private Status status;
+    private String message;
+}
@@ -13,4 +13,5 @@ public class LoanFilterDTO {
 
     private String isbn;
     private String customer;
+    private Boolean includeArchived;
 }
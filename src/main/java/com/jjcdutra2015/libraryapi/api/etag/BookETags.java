@@ -0,0 +1,78 @@
+package com.jjcdutra2015.libraryapi.api.etag;
+
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Strong ETags built from {@link Book#getVersion()}, so they can be checked before any mapping or
+ * serialization and reused as the optimistic lock on updates.
+ */
+public final class BookETags {
+
+    private BookETags() {
+    }
+
+    public static String of(Book book) {
+        return quote(book.getId() + "-" + book.getVersion());
+    }
+
+    /**
+     * Tag of a list response, covering the requested sort and filters as well as the books, so a tag
+     * taken for one query never validates the response to another.
+     *
+     * @param filters the filter values the list was read with; null and blank count as absent and case
+     *                is ignored, as the book filters ignore it
+     */
+    public static String of(Slice<Book> slice, Sort sort, Object... filters) {
+        StringBuilder value = new StringBuilder()
+                .append(slice.getNumber()).append(':')
+                .append(slice.getSize()).append(':')
+                .append(slice.hasNext());
+        if (slice instanceof Page) {
+            value.append(':').append(((Page<Book>) slice).getTotalElements());
+        }
+        for (Sort.Order order : sort) {
+            value.append('|').append(order.getProperty()).append(' ').append(order.getDirection())
+                    .append(order.isIgnoreCase() ? " ic" : "");
+        }
+        for (Object filter : filters) {
+            value.append('|').append(normalize(filter));
+        }
+        for (Book book : slice.getContent()) {
+            value.append(';').append(book.getId()).append('-').append(book.getVersion());
+        }
+        return quote(DigestUtils.md5DigestAsHex(value.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public static long lastModified(Book book) {
+        return book.getUpdatedAt() != null ? book.getUpdatedAt().toEpochMilli() : -1;
+    }
+
+    /**
+     * Strong comparison as If-Match requires: weak tags never match, {@code *} matches any current book.
+     */
+    public static boolean matches(String ifMatch, String etag) {
+        for (String candidate : ifMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String normalize(Object filter) {
+        String text = filter != null ? filter.toString() : "";
+        return text.isBlank() ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    private static String quote(String value) {
+        return "\"" + value + "\"";
+    }
+}
@@ -24,6 +24,10 @@ public class ApiErrors {
         this.errors = Arrays.asList(ex.getReason());
     }
 
+    public ApiErrors(String message) {
+        this.errors = Arrays.asList(message);
+    }
+
     public List<String> getErrors() {
         return errors;
     }
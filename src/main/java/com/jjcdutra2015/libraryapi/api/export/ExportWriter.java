@@ -0,0 +1,112 @@
+package com.jjcdutra2015.libraryapi.api.export;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Writes records one at a time to an output stream, as NDJSON or CSV, so an export never holds more
+ * than the current record in memory.
+ */
+public abstract class ExportWriter<T> implements Closeable {
+
+    public static <T> ExportWriter<T> of(ExportFormat format, OutputStream out, ObjectMapper objectMapper,
+                                         List<String> header, Function<T, List<Object>> columns) throws IOException {
+        if (format == ExportFormat.CSV) {
+            return new CsvWriter<>(out, header, columns);
+        }
+        return new NdjsonWriter<>(out, objectMapper);
+    }
+
+    public void write(T record) {
+        try {
+            doWrite(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    protected abstract void doWrite(T record) throws IOException;
+
+    private static class NdjsonWriter<T> extends ExportWriter<T> {
+
+        private final JsonGenerator generator;
+        private final ObjectWriter writer;
+
+        NdjsonWriter(OutputStream out, ObjectMapper objectMapper) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(out);
+            this.generator.setRootValueSeparator(null);
+            // Flushing after every record would turn each line into its own network write
+            this.writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        }
+
+        @Override
+        protected void doWrite(T record) throws IOException {
+            writer.writeValue(generator, record);
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    private static class CsvWriter<T> extends ExportWriter<T> {
+
+        private final Writer writer;
+        private final Function<T, List<Object>> columns;
+
+        CsvWriter(OutputStream out, List<String> header, Function<T, List<Object>> columns) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            this.columns = columns;
+            writeRow(header);
+        }
+
+        @Override
+        protected void doWrite(T record) throws IOException {
+            writeRow(columns.apply(record));
+        }
+
+        private void writeRow(List<?> values) throws IOException {
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeValue(values.get(i));
+            }
+            writer.write("\r\n");
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            String text = value.toString();
+            if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+                writer.write(text);
+                return;
+            }
+            writer.write('"');
+            writer.write(text.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.jjcdutra2015.libraryapi.api.mapper;
+
+import com.jjcdutra2015.libraryapi.api.dto.BookDTO;
+import com.jjcdutra2015.libraryapi.api.dto.SliceDTO;
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Slice;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BookMapper {
+
+    public BookDTO toDto(Book book) {
+        if (book == null) {
+            return null;
+        }
+        return BookDTO.builder()
+                .id(book.getId())
+                .title(book.getTitle())
+                .author(book.getAuthor())
+                .isbn(book.getIsbn())
+                .build();
+    }
+
+    public Book toEntity(BookDTO dto) {
+        if (dto == null) {
+            return null;
+        }
+        return Book.builder()
+                .id(dto.getId())
+                .title(dto.getTitle())
+                .author(dto.getAuthor())
+                .isbn(dto.getIsbn())
+                .build();
+    }
+
+    public List<BookDTO> toDto(List<Book> books) {
+        List<BookDTO> list = new ArrayList<>(books.size());
+        for (Book book : books) {
+            list.add(toDto(book));
+        }
+        return list;
+    }
+
+    public Page<BookDTO> toDto(Page<Book> page) {
+        return new PageImpl<>(toDto(page.getContent()), page.getPageable(), page.getTotalElements());
+    }
+
+    public SliceDTO<BookDTO> toDto(Slice<Book> slice) {
+        return SliceDTO.<BookDTO>builder()
+                .content(toDto(slice.getContent()))
+                .number(slice.getNumber())
+                .size(slice.getSize())
+                .hasNext(slice.hasNext())
+                .build();
+    }
+}
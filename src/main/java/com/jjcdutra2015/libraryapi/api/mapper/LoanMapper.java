@@ -0,0 +1,55 @@
+package com.jjcdutra2015.libraryapi.api.mapper;
+
+import com.jjcdutra2015.libraryapi.api.dto.LoandDTO;
+import com.jjcdutra2015.libraryapi.api.dto.SliceDTO;
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.Loan;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Slice;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LoanMapper {
+
+    private final BookMapper bookMapper;
+
+    public LoanMapper(BookMapper bookMapper) {
+        this.bookMapper = bookMapper;
+    }
+
+    public LoandDTO toDto(Loan loan) {
+        if (loan == null) {
+            return null;
+        }
+        Book book = loan.getBook();
+        return LoandDTO.builder()
+                .id(loan.getId())
+                .isbn(book != null ? book.getIsbn() : null)
+                .customer(loan.getCustomer())
+                .book(bookMapper.toDto(book))
+                .build();
+    }
+
+    public List<LoandDTO> toDto(List<Loan> loans) {
+        List<LoandDTO> list = new ArrayList<>(loans.size());
+        for (Loan loan : loans) {
+            list.add(toDto(loan));
+        }
+        return list;
+    }
+
+    public Page<LoandDTO> toDto(Page<Loan> page) {
+        return new PageImpl<>(toDto(page.getContent()), page.getPageable(), page.getTotalElements());
+    }
+
+    public SliceDTO<LoandDTO> toDto(Slice<Loan> slice) {
+        return SliceDTO.<LoandDTO>builder()
+                .content(toDto(slice.getContent()))
+                .number(slice.getNumber())
+                .size(slice.getSize())
+                .hasNext(slice.hasNext())
+                .build();
+    }
+}
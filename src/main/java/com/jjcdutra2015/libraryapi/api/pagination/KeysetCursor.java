@@ -0,0 +1,97 @@
+package com.jjcdutra2015.libraryapi.api.pagination;
+
+import lombok.Value;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+public final class KeysetCursor {
+
+    public static final int MAX_SIZE = 2000;
+
+    private static final String PREFIX = "id:";
+    private static final String DATE_PREFIX = "date:";
+
+    private KeysetCursor() {
+    }
+
+    public static String encode(Long id) {
+        String value = PREFIX + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Long decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!value.startsWith(PREFIX)) {
+                throw new IllegalArgumentException(value);
+            }
+            return Long.valueOf(value.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+
+    public static String encode(LocalDate date, Long id) {
+        String value = DATE_PREFIX + date + ":" + PREFIX + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Position decodePosition(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int idStart = value.indexOf(":" + PREFIX);
+            if (!value.startsWith(DATE_PREFIX) || idStart < 0) {
+                throw new IllegalArgumentException(value);
+            }
+            LocalDate date = LocalDate.parse(value.substring(DATE_PREFIX.length(), idStart));
+            Long id = Long.valueOf(value.substring(idStart + 1 + PREFIX.length()));
+            return new Position(date, id);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+
+    public static <T> String next(Slice<T> slice, Function<T, LocalDate> dateExtractor, Function<T, Long> idExtractor) {
+        if (!slice.hasNext() || !slice.hasContent()) {
+            return null;
+        }
+        List<T> content = slice.getContent();
+        T last = content.get(content.size() - 1);
+        return encode(dateExtractor.apply(last), idExtractor.apply(last));
+    }
+
+    public static <T> String next(Slice<T> slice, Function<T, Long> idExtractor) {
+        if (!slice.hasNext() || !slice.hasContent()) {
+            return null;
+        }
+        List<T> content = slice.getContent();
+        return encode(idExtractor.apply(content.get(content.size() - 1)));
+    }
+
+    public static int size(int size) {
+        return Math.max(1, Math.min(size, MAX_SIZE));
+    }
+
+    /**
+     * Position in a listing ordered by a date and then by id.
+     */
+    @Value
+    public static class Position {
+        LocalDate date;
+        Long id;
+    }
+}
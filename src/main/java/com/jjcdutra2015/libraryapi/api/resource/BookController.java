@@ -1,50 +1,106 @@
 package com.jjcdutra2015.libraryapi.api.resource;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
 import com.jjcdutra2015.libraryapi.api.dto.BookDTO;
+import com.jjcdutra2015.libraryapi.api.dto.BookImportResultDTO;
+import com.jjcdutra2015.libraryapi.api.dto.CursorPageDTO;
+import com.jjcdutra2015.libraryapi.api.dto.SliceDTO;
+import com.jjcdutra2015.libraryapi.api.etag.BookETags;
 import com.jjcdutra2015.libraryapi.api.exception.ApiErrors;
+import com.jjcdutra2015.libraryapi.api.export.ExportFormat;
+import com.jjcdutra2015.libraryapi.api.export.ExportWriter;
+import com.jjcdutra2015.libraryapi.api.mapper.BookMapper;
+import com.jjcdutra2015.libraryapi.api.pagination.KeysetCursor;
 import com.jjcdutra2015.libraryapi.exception.BusinessException;
 import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.service.BookImportService;
 import com.jjcdutra2015.libraryapi.service.BookService;
-import org.modelmapper.ModelMapper;
+import com.jjcdutra2015.libraryapi.service.ExportService;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
 
 @RestController
 @RequestMapping("/api/books")
 public class BookController {
 
     private BookService service;
-    private ModelMapper modelMapper;
+    private BookMapper bookMapper;
+    private BookImportService importService;
+    private ExportService exportService;
+    private ObjectMapper objectMapper;
 
-    public BookController(BookService service, ModelMapper modelMapper) {
+    public BookController(BookService service, BookMapper bookMapper, BookImportService importService,
+                          ExportService exportService, ObjectMapper objectMapper) {
         this.service = service;
-        this.modelMapper = modelMapper;
+        this.bookMapper = bookMapper;
+        this.importService = importService;
+        this.exportService = exportService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public BookDTO create(@RequestBody @Valid BookDTO dto) {
-        Book entity = modelMapper.map(dto, Book.class);
+        Book entity = bookMapper.toEntity(dto);
         entity = service.save(entity);
-        return modelMapper.map(entity, BookDTO.class);
+        return bookMapper.toDto(entity);
     }
 
-    @GetMapping("{id}")
-    public BookDTO get(@PathVariable Long id) {
-        return service.getById(id)
-                .map(book -> modelMapper.map(book, BookDTO.class))
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    @PostMapping(value = "import", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public BookImportResultDTO importBooks(InputStream body) throws IOException {
+        try (MappingIterator<BookDTO> dtos = objectMapper.readerFor(BookDTO.class).readValues(body)) {
+            Iterator<Book> books = new Iterator<Book>() {
+                @Override
+                public boolean hasNext() {
+                    return dtos.hasNext();
+                }
+
+                @Override
+                public Book next() {
+                    return bookMapper.toEntity(dtos.next());
+                }
+            };
+            return importService.importBooks(books);
+        } catch (JsonProcessingException e) {
+            throw invalidImportPayload();
+        } catch (RuntimeException e) {
+            // MappingIterator wraps parse errors found mid-stream in unchecked exceptions
+            if (e instanceof RuntimeJsonMappingException || e.getCause() instanceof JsonProcessingException) {
+                throw invalidImportPayload();
+            }
+            throw e;
+        }
+    }
 
+    @GetMapping("{id}")
+    public BookDTO get(@PathVariable Long id, WebRequest request) {
+        Book book = service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        if (request.checkNotModified(BookETags.of(book), BookETags.lastModified(book))) {
+            return null;
+        }
+        return bookMapper.toDto(book);
     }
 
     @DeleteMapping("{id}")
@@ -55,23 +111,98 @@ public class BookController {
     }
 
     @PutMapping("{id}")
-    public BookDTO update(@PathVariable Long id, BookDTO dto) {
-        return service.getById(id).map(book -> {
-            book.setTitle(dto.getTitle());
-            book.setAuthor(dto.getAuthor());
+    public ResponseEntity<BookDTO> update(@PathVariable Long id, BookDTO dto,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Book book = service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        if (ifMatch != null && !BookETags.matches(ifMatch, BookETags.of(book))) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED);
+        }
+        book.setTitle(dto.getTitle());
+        book.setAuthor(dto.getAuthor());
+        try {
             book = service.update(book);
-            return modelMapper.map(book, BookDTO.class);
-        }).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        } catch (OptimisticLockingFailureException e) {
+            // Changed between the If-Match check and the write; the version check on update caught it
+            if (ifMatch != null) {
+                throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED);
+            }
+            throw e;
+        }
+        return ResponseEntity.ok()
+                .eTag(BookETags.of(book))
+                .body(bookMapper.toDto(book));
     }
 
     @GetMapping
-    public Page<BookDTO> find(BookDTO dto, Pageable pageRequest) {
-        Book filter = modelMapper.map(dto, Book.class);
+    public Page<BookDTO> find(BookDTO dto, Pageable pageRequest, WebRequest request) {
+        Book filter = bookMapper.toEntity(dto);
         Page<Book> result = service.find(filter, pageRequest);
-        List<BookDTO> list = result.getContent().stream()
-                .map(entity -> modelMapper.map(entity, BookDTO.class))
-                .collect(Collectors.toList());
+        if (request.checkNotModified(BookETags.of(result, pageRequest.getSort(),
+                filter.getId(), filter.getTitle(), filter.getAuthor(), filter.getIsbn()))) {
+            return null;
+        }
+        return bookMapper.toDto(result);
+    }
+
+    @GetMapping(params = {"count=false", "!q", "!after"})
+    public SliceDTO<BookDTO> findSlice(BookDTO dto, Pageable pageRequest, WebRequest request) {
+        Book filter = bookMapper.toEntity(dto);
+        Slice<Book> result = service.findSlice(filter, pageRequest);
+        if (request.checkNotModified(BookETags.of(result, pageRequest.getSort(),
+                filter.getId(), filter.getTitle(), filter.getAuthor(), filter.getIsbn()))) {
+            return null;
+        }
+        return bookMapper.toDto(result);
+    }
+
+    @GetMapping(params = {"q", "!after"})
+    public Page<BookDTO> search(@RequestParam String q, Pageable pageRequest, WebRequest request) {
+        Page<Book> result = service.search(q, pageRequest);
+        if (request.checkNotModified(BookETags.of(result, pageRequest.getSort(), q))) {
+            return null;
+        }
+        return bookMapper.toDto(result);
+    }
+
+    @GetMapping("available")
+    public Page<BookDTO> findAvailable(Pageable pageRequest, WebRequest request) {
+        Page<Book> result = service.findAvailable(pageRequest);
+        if (request.checkNotModified(BookETags.of(result, pageRequest.getSort()))) {
+            return null;
+        }
+        return bookMapper.toDto(result);
+    }
+
+    @GetMapping(params = "after")
+    public CursorPageDTO<BookDTO> find(BookDTO dto, @RequestParam String after,
+                                       @RequestParam(defaultValue = "20") int size, WebRequest request) {
+        Book filter = bookMapper.toEntity(dto);
+        Slice<Book> result = service.find(filter, KeysetCursor.decode(after), KeysetCursor.size(size));
+        if (request.checkNotModified(BookETags.of(result, Sort.unsorted(),
+                filter.getId(), filter.getTitle(), filter.getAuthor(), filter.getIsbn()))) {
+            return null;
+        }
+        return CursorPageDTO.<BookDTO>builder()
+                .content(bookMapper.toDto(result.getContent()))
+                .next(KeysetCursor.next(result, Book::getId))
+                .build();
+    }
+
+    @GetMapping("export")
+    public void export(BookDTO dto, @RequestParam(defaultValue = "ndjson") String format,
+                       HttpServletResponse response) throws IOException {
+        ExportFormat exportFormat = ExportFormat.of(format);
+        response.setContentType(exportFormat.getContentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=books." + exportFormat.getExtension());
+
+        try (ExportWriter<BookDTO> writer = ExportWriter.of(exportFormat, response.getOutputStream(), objectMapper,
+                Arrays.asList("id", "title", "author", "isbn"),
+                book -> Arrays.asList(book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn()))) {
+            exportService.forEachBook(bookMapper.toEntity(dto), book -> writer.write(bookMapper.toDto(book)));
+        }
+    }
 
-        return new PageImpl<BookDTO>(list, pageRequest, result.getTotalElements());
+    private ResponseStatusException invalidImportPayload() {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid import payload");
     }
 }
@@ -1,34 +1,53 @@
 package com.jjcdutra2015.libraryapi.api.resource;
 
-import com.jjcdutra2015.libraryapi.api.dto.BookDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jjcdutra2015.libraryapi.api.dto.CursorPageDTO;
+import com.jjcdutra2015.libraryapi.api.dto.LoanBatchResultDTO;
 import com.jjcdutra2015.libraryapi.api.dto.LoanFilterDTO;
+import com.jjcdutra2015.libraryapi.api.dto.LoanReturnDTO;
 import com.jjcdutra2015.libraryapi.api.dto.LoandDTO;
 import com.jjcdutra2015.libraryapi.api.dto.ReturnedLoanDTO;
+import com.jjcdutra2015.libraryapi.api.dto.SliceDTO;
+import com.jjcdutra2015.libraryapi.api.export.ExportFormat;
+import com.jjcdutra2015.libraryapi.api.export.ExportWriter;
+import com.jjcdutra2015.libraryapi.api.mapper.LoanMapper;
+import com.jjcdutra2015.libraryapi.api.pagination.KeysetCursor;
 import com.jjcdutra2015.libraryapi.model.entity.Book;
 import com.jjcdutra2015.libraryapi.model.entity.Loan;
 import com.jjcdutra2015.libraryapi.service.BookService;
+import com.jjcdutra2015.libraryapi.service.ExportService;
+import com.jjcdutra2015.libraryapi.service.LoanBatchService;
 import com.jjcdutra2015.libraryapi.service.LoanService;
+import com.jjcdutra2015.libraryapi.service.OverdueLoanService;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/loans")
 @RequiredArgsConstructor
 public class LoanController {
 
+    static final int MAX_BATCH_SIZE = 500;
+
     private final LoanService service;
     private final BookService bookService;
-    private final ModelMapper modelMapper;
+    private final LoanMapper loanMapper;
+    private final LoanBatchService batchService;
+    private final ExportService exportService;
+    private final OverdueLoanService overdueService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -43,6 +62,18 @@ public class LoanController {
         return entity.getId();
     }
 
+    @PostMapping("batch")
+    public LoanBatchResultDTO createBatch(@RequestBody List<LoandDTO> dtos) {
+        checkBatchSize(dtos);
+        return batchService.checkout(dtos);
+    }
+
+    @PatchMapping("batch")
+    public LoanBatchResultDTO returnBatch(@RequestBody List<LoanReturnDTO> dtos) {
+        checkBatchSize(dtos);
+        return batchService.updateReturns(dtos);
+    }
+
     @PatchMapping("{id}")
     public void returnBook(@PathVariable Long id, @RequestBody ReturnedLoanDTO dto) {
         Loan loan = service.getById(id)
@@ -55,16 +86,55 @@ public class LoanController {
     @GetMapping
     public Page<LoandDTO> find(LoanFilterDTO dto, Pageable pageable) {
         Page<Loan> result = service.find(dto, pageable);
-        List<LoandDTO> loans = result.getContent().stream()
-                .map(entity -> {
-                            Book book = entity.getBook();
-                            BookDTO bookDTO = modelMapper.map(book, BookDTO.class);
-                            LoandDTO loandDTO = modelMapper.map(entity, LoandDTO.class);
-                            loandDTO.setBook(bookDTO);
-                            return loandDTO;
-                        }
-                ).collect(Collectors.toList());
-
-        return new PageImpl<>(loans, pageable, result.getTotalElements());
+        return loanMapper.toDto(result);
+    }
+
+    @GetMapping(params = {"count=false", "!after"})
+    public SliceDTO<LoandDTO> findSlice(LoanFilterDTO dto, Pageable pageable) {
+        Slice<Loan> result = service.findSlice(dto, pageable);
+        return loanMapper.toDto(result);
+    }
+
+    @GetMapping(params = "after")
+    public CursorPageDTO<LoandDTO> find(LoanFilterDTO dto, @RequestParam String after,
+                                        @RequestParam(defaultValue = "20") int size) {
+        Slice<Loan> result = service.find(dto, KeysetCursor.decode(after), KeysetCursor.size(size));
+        return CursorPageDTO.<LoandDTO>builder()
+                .content(loanMapper.toDto(result.getContent()))
+                .next(KeysetCursor.next(result, Loan::getId))
+                .build();
+    }
+
+    @GetMapping("overdue")
+    public CursorPageDTO<LoandDTO> findOverdue(@RequestParam(required = false) String after,
+                                               @RequestParam(defaultValue = "20") int size) {
+        KeysetCursor.Position position = KeysetCursor.decodePosition(after);
+        Slice<Loan> result = overdueService.findOverdue(position != null ? position.getDate() : null,
+                position != null ? position.getId() : null, KeysetCursor.size(size));
+        return CursorPageDTO.<LoandDTO>builder()
+                .content(loanMapper.toDto(result.getContent()))
+                .next(KeysetCursor.next(result, Loan::getLoanDate, Loan::getId))
+                .build();
+    }
+
+    @GetMapping("export")
+    public void export(LoanFilterDTO dto, @RequestParam(defaultValue = "ndjson") String format,
+                       HttpServletResponse response) throws IOException {
+        ExportFormat exportFormat = ExportFormat.of(format);
+        response.setContentType(exportFormat.getContentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=loans." + exportFormat.getExtension());
+
+        try (ExportWriter<LoandDTO> writer = ExportWriter.of(exportFormat, response.getOutputStream(), objectMapper,
+                Arrays.asList("id", "isbn", "customer", "title", "author"),
+                loan -> Arrays.asList(loan.getId(), loan.getIsbn(), loan.getCustomer(),
+                        loan.getBook().getTitle(), loan.getBook().getAuthor()))) {
+            exportService.forEachLoan(dto, loan -> writer.write(loanMapper.toDto(loan)));
+        }
+    }
+
+    private void checkBatchSize(List<?> dtos) {
+        if (dtos.size() > MAX_BATCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Batch size must not exceed " + MAX_BATCH_SIZE);
+        }
     }
 }
@@ -0,0 +1,42 @@
+package com.jjcdutra2015.libraryapi.api.throttle;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * {@code library.web.execution-mode=thread-per-request} (the default) keeps plain Tomcat behaviour;
+ * {@code bounded} puts {@link AdmissionControlFilter} in front of the api, sized by default to the
+ * Hikari pool so only requests that can get a connection are let through.
+ */
+@Configuration
+@ConditionalOnProperty(name = "library.web.execution-mode", havingValue = "bounded")
+public class WebExecutionConfig {
+
+    static final int DEFAULT_MAX_CONCURRENT = 10;
+
+    @Bean
+    public FilterRegistrationBean<AdmissionControlFilter> admissionControlFilter(
+            @Value("${library.web.max-concurrent-requests:0}") int maxConcurrent,
+            @Value("${library.web.admission-timeout:1s}") Duration admissionTimeout,
+            DataSource dataSource,
+            ObjectMapper objectMapper) throws SQLException {
+        // The pool may have been sized at startup from the core count, so read the size it actually got
+        if (maxConcurrent <= 0) {
+            maxConcurrent = dataSource.isWrapperFor(HikariDataSource.class)
+                    ? dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize() : DEFAULT_MAX_CONCURRENT;
+        }
+        FilterRegistrationBean<AdmissionControlFilter> registration =
+                new FilterRegistrationBean<>(new AdmissionControlFilter(maxConcurrent, admissionTimeout, objectMapper));
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+}
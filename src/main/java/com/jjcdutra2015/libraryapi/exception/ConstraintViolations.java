@@ -0,0 +1,27 @@
+package com.jjcdutra2015.libraryapi.exception;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.sql.SQLException;
+
+public final class ConstraintViolations {
+
+    private ConstraintViolations() {
+    }
+
+    public static boolean isViolationOf(DataIntegrityViolationException e, String constraint) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException) {
+                String name = ((ConstraintViolationException) cause).getConstraintName();
+                return name != null && name.toLowerCase().contains(constraint.toLowerCase());
+            }
+            // Plain JDBC access has no parsed constraint name, but drivers put it in the message
+            if (cause instanceof SQLException) {
+                String message = cause.getMessage();
+                return message != null && message.toLowerCase().contains(constraint.toLowerCase());
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,95 @@
+package com.jjcdutra2015.libraryapi.model.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Logs a warning at startup for each connection or JDBC setting known to hurt under load. Nothing is
+ * rejected: the checks are heuristics, and a deliberate choice only costs a log line. Only the
+ * {@code perf} profile runs them, so development and test setups do not log warnings meant for production.
+ */
+@Slf4j
+@Component
+@Profile("perf")
+public class DataSourceSettingsValidator {
+
+    static final long MAX_CONNECTION_TIMEOUT_MS = 30_000;
+
+    private final DataSource dataSource;
+    private final Environment environment;
+    private final int cores;
+
+    @Autowired
+    public DataSourceSettingsValidator(DataSource dataSource, Environment environment) {
+        this(dataSource, environment, Runtime.getRuntime().availableProcessors());
+    }
+
+    DataSourceSettingsValidator(DataSource dataSource, Environment environment, int cores) {
+        this.dataSource = dataSource;
+        this.environment = environment;
+        this.cores = cores;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warnOnRiskySettings() {
+        validate().forEach(warning -> log.warn(warning));
+    }
+
+    public List<String> validate() {
+        List<String> warnings = new ArrayList<>();
+        if (environment.getProperty("spring.jpa.open-in-view", Boolean.class, true)) {
+            warnings.add("spring.jpa.open-in-view is enabled: every request keeps its connection until the response is written");
+        }
+        Integer batchSize = environment.getProperty("spring.jpa.properties.hibernate.jdbc.batch_size", Integer.class);
+        if (batchSize == null || batchSize <= 1) {
+            warnings.add("hibernate.jdbc.batch_size is not set: every insert and update is a separate round trip");
+        }
+
+        HikariDataSource hikari = hikari();
+        if (hikari == null) {
+            return warnings;
+        }
+        int recommended = HikariTuningPostProcessor.poolSize(cores, 2, 1);
+        int maximumPoolSize = hikari.getMaximumPoolSize();
+        if (maximumPoolSize > 2 * recommended) {
+            warnings.add(String.format("maximum-pool-size %d is more than twice %d (%d cores * 2 + 1): connections "
+                    + "beyond what the database can run in parallel only queue inside it", maximumPoolSize, recommended, cores));
+        }
+        // -1 until the pool starts, when Hikari defaults it to the maximum
+        if (hikari.getMinimumIdle() >= 0 && hikari.getMinimumIdle() < maximumPoolSize) {
+            warnings.add(String.format("minimum-idle %d is below maximum-pool-size %d: connections are opened under load "
+                    + "instead of being ready", hikari.getMinimumIdle(), maximumPoolSize));
+        }
+        if (hikari.getConnectionTimeout() > MAX_CONNECTION_TIMEOUT_MS) {
+            warnings.add(String.format("connection-timeout %dms: requests wait that long for a connection before failing",
+                    hikari.getConnectionTimeout()));
+        }
+        if ("bounded".equals(environment.getProperty("library.web.execution-mode"))) {
+            Integer maxConcurrent = environment.getProperty("library.web.max-concurrent-requests", Integer.class);
+            if (maxConcurrent != null && maxConcurrent > maximumPoolSize) {
+                warnings.add(String.format("library.web.max-concurrent-requests %d is above maximum-pool-size %d: "
+                        + "admitted requests still wait for a connection", maxConcurrent, maximumPoolSize));
+            }
+        }
+        return warnings;
+    }
+
+    private HikariDataSource hikari() {
+        try {
+            return dataSource.isWrapperFor(HikariDataSource.class) ? dataSource.unwrap(HikariDataSource.class) : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.jjcdutra2015.libraryapi.model.datasource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * Enabled by {@code library.datasource.tuning.enabled=true}, once PoolSizeBenchmark has backed the
+ * {@code library.datasource.*} values for the target hardware.
+ */
+@Configuration
+@ConditionalOnProperty(name = "library.datasource.tuning.enabled", havingValue = "true")
+public class DataSourceTuningConfig {
+
+    // Static so the post processor exists before the DataSource bean it has to see
+    @Bean
+    public static HikariTuningPostProcessor hikariTuningPostProcessor(Environment environment) {
+        int poolSize = HikariTuningPostProcessor.poolSize(Runtime.getRuntime().availableProcessors(),
+                environment.getProperty("library.datasource.connections-per-core", Integer.class, 2),
+                environment.getProperty("library.datasource.effective-spindles", Integer.class, 1));
+        return new HikariTuningPostProcessor(poolSize,
+                environment.containsProperty("spring.datasource.hikari.maximum-pool-size"),
+                environment.containsProperty("spring.datasource.hikari.minimum-idle"),
+                environment.getProperty("library.datasource.statement-cache-size", Integer.class, 0));
+    }
+}
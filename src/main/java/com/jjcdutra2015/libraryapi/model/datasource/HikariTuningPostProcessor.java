@@ -0,0 +1,56 @@
+package com.jjcdutra2015.libraryapi.model.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+/**
+ * Sizes the Hikari pool from the core count and turns on H2's per-session cache of parsed statements
+ * before the pool opens its first connection. Settings given explicitly under
+ * {@code spring.datasource.hikari} or in the jdbc url are left alone.
+ */
+public class HikariTuningPostProcessor implements BeanPostProcessor {
+
+    static final String H2_QUERY_CACHE_SIZE = "QUERY_CACHE_SIZE";
+
+    private final int poolSize;
+    private final boolean poolSizeConfigured;
+    private final boolean minimumIdleConfigured;
+    private final int statementCacheSize;
+
+    public HikariTuningPostProcessor(int poolSize, boolean poolSizeConfigured, boolean minimumIdleConfigured,
+                                     int statementCacheSize) {
+        this.poolSize = poolSize;
+        this.poolSizeConfigured = poolSizeConfigured;
+        this.minimumIdleConfigured = minimumIdleConfigured;
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * The pool size HikariCP suggests for a database on the same kind of hardware:
+     * {@code cores * connectionsPerCore + effectiveSpindles}.
+     */
+    public static int poolSize(int cores, int connectionsPerCore, int effectiveSpindles) {
+        return cores * connectionsPerCore + effectiveSpindles;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof HikariDataSource)) {
+            return bean;
+        }
+        HikariDataSource dataSource = (HikariDataSource) bean;
+        if (!poolSizeConfigured) {
+            dataSource.setMaximumPoolSize(poolSize);
+        }
+        // A fixed-size pool keeps connections ready for bursts instead of opening them under load
+        if (!minimumIdleConfigured) {
+            dataSource.setMinimumIdle(dataSource.getMaximumPoolSize());
+        }
+        String url = dataSource.getJdbcUrl();
+        if (statementCacheSize > 0 && url != null && url.startsWith("jdbc:h2:")
+                && !url.toUpperCase().contains(H2_QUERY_CACHE_SIZE)) {
+            dataSource.setJdbcUrl(url + ";" + H2_QUERY_CACHE_SIZE + "=" + statementCacheSize);
+        }
+        return dataSource;
+    }
+}
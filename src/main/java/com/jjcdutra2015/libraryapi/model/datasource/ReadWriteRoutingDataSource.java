@@ -0,0 +1,55 @@
+package com.jjcdutra2015.libraryapi.model.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sends read-only transactions to the replica and everything else to the primary. For
+ * {@code readYourWritesWindow} after a client commits a read-write transaction, that client's read-only
+ * transactions stay on the primary too, so it does not see the replica lagging behind its own write.
+ * Who the client is comes from {@link ReadYourWrites}; everyone else keeps reading the replica.
+ * <p>
+ * Must sit behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}: the
+ * read-only flag is only set once the transaction has begun, after the connection was asked for.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    enum Route {
+        PRIMARY, REPLICA
+    }
+
+    private final long readYourWritesWindowMillis;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, Duration readYourWritesWindow) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(Route.PRIMARY, primary);
+        targets.put(Route.REPLICA, replica);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+        this.readYourWritesWindowMillis = readYourWritesWindow.toMillis();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        ReadYourWrites client = ReadYourWrites.current();
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return client.wroteWithin(readYourWritesWindowMillis, System.currentTimeMillis()) ? Route.PRIMARY : Route.REPLICA;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    client.wrote(System.currentTimeMillis());
+                }
+            });
+        }
+        return Route.PRIMARY;
+    }
+}
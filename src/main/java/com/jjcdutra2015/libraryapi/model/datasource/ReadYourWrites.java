@@ -0,0 +1,49 @@
+package com.jjcdutra2015.libraryapi.model.datasource;
+
+import java.util.function.LongConsumer;
+
+/**
+ * When the current client last committed a write, so {@link ReadWriteRoutingDataSource} keeps only that
+ * client's reads on the primary. A request gets it from {@link ReadYourWritesFilter}, which carries it
+ * in a cookie; any other thread, such as a scheduled job, keeps its own.
+ */
+public final class ReadYourWrites {
+
+    private static final ThreadLocal<ReadYourWrites> CURRENT = ThreadLocal.withInitial(() -> new ReadYourWrites(0, null));
+
+    private long lastWriteMillis;
+    private final LongConsumer onWrite;
+
+    private ReadYourWrites(long lastWriteMillis, LongConsumer onWrite) {
+        this.lastWriteMillis = lastWriteMillis;
+        this.onWrite = onWrite;
+    }
+
+    public static ReadYourWrites current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Starts a client's scope on this thread, {@code onWrite} being told of every write it commits.
+     */
+    public static void open(long lastWriteMillis, LongConsumer onWrite) {
+        CURRENT.set(new ReadYourWrites(lastWriteMillis, onWrite));
+    }
+
+    public static void close() {
+        CURRENT.remove();
+    }
+
+    // A write time in the future comes from a tampered or skewed cookie and is ignored
+    public boolean wroteWithin(long windowMillis, long nowMillis) {
+        long age = nowMillis - lastWriteMillis;
+        return age >= 0 && age < windowMillis;
+    }
+
+    public void wrote(long nowMillis) {
+        lastWriteMillis = nowMillis;
+        if (onWrite != null) {
+            onWrite.accept(nowMillis);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.jjcdutra2015.libraryapi.model.datasource;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Scopes {@link ReadYourWrites} to the client: the time of its last write travels in a cookie that
+ * lives as long as the read-your-writes window, so requests from anyone else keep reading the replica.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String COOKIE = "library-last-write";
+
+    private final int maxAgeSeconds;
+
+    public ReadYourWritesFilter(Duration readYourWritesWindow) {
+        this.maxAgeSeconds = (int) Math.max(1, (readYourWritesWindow.toMillis() + 999) / 1000);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ReadYourWrites.open(lastWriteMillis(request), millis -> response.addCookie(cookie(millis)));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReadYourWrites.close();
+        }
+    }
+
+    private static long lastWriteMillis(HttpServletRequest request) {
+        Cookie cookie = WebUtils.getCookie(request, COOKIE);
+        if (cookie != null) {
+            try {
+                return Long.parseLong(cookie.getValue());
+            } catch (NumberFormatException e) {
+                // Not one of ours: treat the client as not having written
+            }
+        }
+        return 0;
+    }
+
+    private Cookie cookie(long millis) {
+        Cookie cookie = new Cookie(COOKIE, String.valueOf(millis));
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge(maxAgeSeconds);
+        return cookie;
+    }
+}
@@ -0,0 +1,41 @@
+package com.jjcdutra2015.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * A returned loan moved out of {@code loan} by the archival job, keeping its id. Only the columns the
+ * history needs: an archived loan is always returned and never holds its book.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "loan_archive",
+        indexes = {@Index(name = "idx_loan_archive_book", columnList = "id_book, id"),
+                @Index(name = "idx_loan_archive_customer", columnList = "customer, id")})
+public class ArchivedLoan {
+
+    @Id
+    private Long id;
+
+    @Column(length = 100)
+    private String customer;
+
+    @JoinColumn(name = "id_book", foreignKey = @ForeignKey(name = "fk_loan_archive_book"))
+    @ManyToOne
+    private Book book;
+
+    @Column(name = "loan_date")
+    private LocalDate loanDate;
+
+    public Loan toLoan() {
+        return Loan.builder().id(id).customer(customer).book(book).loanDate(loanDate).returned(true).build();
+    }
+}
@@ -4,20 +4,37 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import javax.persistence.*;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 
 @Data
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Book.CACHE_REGION)
+@Table(uniqueConstraints = @UniqueConstraint(name = Book.ISBN_CONSTRAINT, columnNames = "isbn"),
+        indexes = @Index(name = "idx_book_available", columnList = "available, id"))
 public class Book {
 
+    public static final String ISBN_CONSTRAINT = "uk_book_isbn";
+    public static final String SEQUENCE = "book_seq";
+    public static final String CACHE_REGION = "book";
+    public static final String ISBN_QUERY_CACHE_REGION = "book-isbn-query";
+
     @Id
     @Column
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = SEQUENCE)
+    @GenericGenerator(name = SEQUENCE, strategy = PooledLoSequenceGenerator.NAME,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = SEQUENCE))
     private Long id;
 
     @Column
@@ -28,4 +45,22 @@ public class Book {
 
     @Column
     private String isbn;
+
+    @Builder.Default
+    @Column(nullable = false)
+    private Boolean available = true;
+
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    // Truncated to what a Last-Modified header can carry, so If-Modified-Since compares exactly
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        updatedAt = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+    }
 }
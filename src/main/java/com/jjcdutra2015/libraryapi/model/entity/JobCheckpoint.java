@@ -0,0 +1,36 @@
+package com.jjcdutra2015.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Where a background job stopped, so its next run resumes from there instead of rescanning.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+public class JobCheckpoint {
+
+    @Id
+    @Column(length = 50)
+    private String name;
+
+    @Column
+    private LocalDate lastDate;
+
+    @Column
+    private Long lastId;
+
+    @Column
+    private LocalDateTime updatedAt;
+}
@@ -1,9 +1,14 @@
 package com.jjcdutra2015.libraryapi.model.entity;
 
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import javax.persistence.*;
 import java.time.LocalDate;
@@ -13,22 +18,53 @@ import java.time.LocalDate;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = Loan.ACTIVE_BOOK_CONSTRAINT, columnNames = "active_book_id"),
+        indexes = {@Index(name = "idx_loan_returned_loan_date", columnList = "returned, loan_date, id"),
+                @Index(name = "idx_loan_book_returned", columnList = "id_book, returned"),
+                @Index(name = "idx_loan_customer", columnList = "customer, id")})
 public class Loan {
 
+    public static final String ACTIVE_BOOK_CONSTRAINT = "uk_loan_active_book";
+    public static final String SEQUENCE = "loan_seq";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = SEQUENCE)
+    @GenericGenerator(name = SEQUENCE, strategy = PooledLoSequenceGenerator.NAME,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = SEQUENCE))
     private Long id;
 
     @Column(length = 100)
     private String customer;
 
-    @JoinColumn(name = "id_book")
+    @JoinColumn(name = "id_book", foreignKey = @ForeignKey(name = "fk_loan_book"))
     @ManyToOne
     private Book book;
 
-    @Column
+    @Column(name = "loan_date")
     private LocalDate loanDate;
 
-    @Column
-    private Boolean returned;
+    @Builder.Default
+    @Column(nullable = false)
+    private Boolean returned = false;
+
+    // Holds the book id while the loan is active and null once returned, so the unique
+    // constraint allows a single active loan per book and any number of returned ones
+    @Setter(AccessLevel.NONE)
+    @Column(name = "active_book_id")
+    private Long activeBookId;
+
+    // activeBookId is only synced on write, so until then it still tells the state last loaded or saved
+    public boolean wasReturned() {
+        return id != null && activeBookId == null;
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void syncActiveBookId() {
+        if (returned == null) {
+            returned = false;
+        }
+        boolean active = !returned;
+        activeBookId = active && book != null ? book.getId() : null;
+    }
 }
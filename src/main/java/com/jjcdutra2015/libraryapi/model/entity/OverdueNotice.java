@@ -0,0 +1,50 @@
+package com.jjcdutra2015.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * A loan the overdue scan found overdue, as it was when found. Keeps the book id rather than the book,
+ * so notices outlive both the loan and the book.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+public class OverdueNotice {
+
+    @Id
+    @Column(name = "loan_id")
+    private Long loanId;
+
+    @Column(length = 100)
+    private String customer;
+
+    @Column(name = "id_book")
+    private Long bookId;
+
+    @Column(name = "loan_date")
+    private LocalDate loanDate;
+
+    @Column(name = "detected_at", nullable = false)
+    private LocalDateTime detectedAt;
+
+    public static OverdueNotice of(Loan loan, LocalDateTime detectedAt) {
+        return OverdueNotice.builder()
+                .loanId(loan.getId())
+                .customer(loan.getCustomer())
+                .bookId(loan.getBook().getId())
+                .loanDate(loan.getLoanDate())
+                .detectedAt(detectedAt)
+                .build();
+    }
+}
@@ -0,0 +1,37 @@
+package com.jjcdutra2015.libraryapi.model.entity;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * Sequence generator that hands out ids from blocks of {@code library.ids.allocation-size} values per
+ * sequence call (pooled-lo), so inserts no longer need the generated key back and can be batched.
+ * <p>
+ * The block size has to equal the sequences' {@code increment by}, or blocks overlap. Both come from
+ * {@code library.ids.allocation-size}: this generator reads it through the Hibernate settings and
+ * R__id_sequences.sql through a Flyway placeholder, and Hibernate refuses to start on a mismatch.
+ */
+public class PooledLoSequenceGenerator extends SequenceStyleGenerator {
+
+    public static final String NAME = "com.jjcdutra2015.libraryapi.model.entity.PooledLoSequenceGenerator";
+    public static final String ALLOCATION_SIZE_SETTING = "library.ids.allocation-size";
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        Integer allocationSize = ConfigurationHelper.getInteger(ALLOCATION_SIZE_SETTING,
+                serviceRegistry.getService(ConfigurationService.class).getSettings());
+        if (allocationSize == null || allocationSize < 1) {
+            throw new MappingException(ALLOCATION_SIZE_SETTING + " must be set to a positive block size");
+        }
+        params.setProperty(INCREMENT_PARAM, String.valueOf(allocationSize));
+        params.setProperty(OPT_PARAM, StandardOptimizerDescriptor.POOLED_LO.getExternalName());
+        super.configure(type, params, serviceRegistry);
+    }
+}
@@ -0,0 +1,7 @@
+package com.jjcdutra2015.libraryapi.model.entity.repository;
+
+import com.jjcdutra2015.libraryapi.model.entity.ArchivedLoan;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ArchivedLoanRepository extends JpaRepository<ArchivedLoan, Long>, ArchivedLoanSearchRepository {
+}
@@ -0,0 +1,16 @@
+package com.jjcdutra2015.libraryapi.model.entity.repository;
+
+import com.jjcdutra2015.libraryapi.model.entity.ArchivedLoan;
+
+import java.util.List;
+
+/**
+ * The archived counterpart of {@link LoanSearchRepository}, with the same filter rules and id order.
+ * Returns the first rows only; merging them with the hot loans is up to the caller.
+ */
+public interface ArchivedLoanSearchRepository {
+
+    List<ArchivedLoan> findFirst(String isbn, String customer, Long after, int limit);
+
+    long countSearch(String isbn, String customer);
+}
@@ -0,0 +1,90 @@
+package com.jjcdutra2015.libraryapi.model.entity.repository;
+
+import com.jjcdutra2015.libraryapi.model.entity.ArchivedLoan;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * With both filters, runs the isbn and the customer lookup separately and merges them by id, for the
+ * same reason the hot search uses a UNION: an OR across the join would scan the archive.
+ */
+@Transactional(readOnly = true)
+public class ArchivedLoanSearchRepositoryImpl implements ArchivedLoanSearchRepository {
+
+    private EntityManager entityManager;
+
+    public ArchivedLoanSearchRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<ArchivedLoan> findFirst(String isbn, String customer, Long after, int limit) {
+        if (hasText(isbn) && hasText(customer)) {
+            Map<Long, ArchivedLoan> loans = new TreeMap<>();
+            find(isbn, null, after, limit).forEach(loan -> loans.put(loan.getId(), loan));
+            find(null, customer, after, limit).forEach(loan -> loans.put(loan.getId(), loan));
+            return loans.values().stream().limit(limit).collect(Collectors.toList());
+        }
+        return find(isbn, customer, after, limit);
+    }
+
+    @Override
+    public long countSearch(String isbn, String customer) {
+        if (hasText(isbn) && hasText(customer)) {
+            return count(isbn, null) + count(null, customer) - count(isbn, customer);
+        }
+        return count(isbn, customer);
+    }
+
+    private List<ArchivedLoan> find(String isbn, String customer, Long after, int limit) {
+        TypedQuery<ArchivedLoan> query = entityManager.createQuery(
+                "select a from ArchivedLoan a join fetch a.book b" + where(isbn, customer, after) + " order by a.id",
+                ArchivedLoan.class);
+        bind(query, isbn, customer, after);
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    private long count(String isbn, String customer) {
+        String join = hasText(isbn) ? " join a.book b" : "";
+        TypedQuery<Long> query = entityManager.createQuery(
+                "select count(a) from ArchivedLoan a" + join + where(isbn, customer, null), Long.class);
+        bind(query, isbn, customer, null);
+        return query.getSingleResult();
+    }
+
+    private static String where(String isbn, String customer, Long after) {
+        List<String> predicates = new ArrayList<>();
+        if (after != null) {
+            predicates.add("a.id > :after");
+        }
+        if (hasText(isbn)) {
+            predicates.add("b.isbn = :isbn");
+        }
+        if (hasText(customer)) {
+            predicates.add("a.customer = :customer");
+        }
+        return predicates.isEmpty() ? "" : " where " + String.join(" and ", predicates);
+    }
+
+    private static void bind(Query query, String isbn, String customer, Long after) {
+        if (after != null) {
+            query.setParameter("after", after);
+        }
+        if (hasText(isbn)) {
+            query.setParameter("isbn", isbn);
+        }
+        if (hasText(customer)) {
+            query.setParameter("customer", customer);
+        }
+    }
+}
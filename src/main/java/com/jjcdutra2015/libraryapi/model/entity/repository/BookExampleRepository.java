@@ -0,0 +1,36 @@
+package com.jjcdutra2015.libraryapi.model.entity.repository;
+
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.util.stream.Stream;
+
+public interface BookExampleRepository {
+
+    /**
+     * Same filter as {@code findAll(Example, Pageable)} without the count: one extra row is fetched to
+     * tell whether a next page exists.
+     */
+    Slice<Book> findSlice(Example<Book> example, Pageable pageable);
+
+    /**
+     * Every book matching the example in id order, read {@link BookRepository#STREAM_FETCH_SIZE} rows at a time.
+     */
+    Stream<Book> stream(Example<Book> example);
+
+    /**
+     * The book list filter: the id when given, and the given texts contained in title, author and isbn,
+     * ignoring case. Listing and exporting both filter with it.
+     */
+    static Example<Book> filter(Book filter) {
+        return Example.of(filter,
+                ExampleMatcher.matching()
+                        .withIgnoreCase()
+                        .withIgnoreNullValues()
+                        .withIgnorePaths("available")
+                        .withStringMatcher(ExampleMatcher.StringMatcher.CONTAINING));
+    }
+}
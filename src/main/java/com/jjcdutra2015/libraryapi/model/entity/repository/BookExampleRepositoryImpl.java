@@ -0,0 +1,67 @@
+package com.jjcdutra2015.libraryapi.model.entity.repository;
+
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.convert.QueryByExamplePredicateBuilder;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+@Transactional(readOnly = true)
+public class BookExampleRepositoryImpl implements BookExampleRepository {
+
+    private EntityManager entityManager;
+
+    public BookExampleRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Slice<Book> findSlice(Example<Book> example, Pageable pageable) {
+        TypedQuery<Book> query = query(example, pageable.getSort());
+        if (pageable.isUnpaged()) {
+            return new SliceImpl<>(query.getResultList(), pageable, false);
+        }
+        int size = pageable.getPageSize();
+        List<Book> content = query.setFirstResult((int) pageable.getOffset())
+                .setMaxResults(size + 1)
+                .getResultList();
+        boolean hasNext = content.size() > size;
+        return new SliceImpl<>(hasNext ? content.subList(0, size) : content, pageable, hasNext);
+    }
+
+    @Override
+    public Stream<Book> stream(Example<Book> example) {
+        return query(example, Sort.by("id"))
+                .setHint(HINT_FETCH_SIZE, Integer.valueOf(BookRepository.STREAM_FETCH_SIZE))
+                .setHint(HINT_READONLY, true)
+                .getResultStream();
+    }
+
+    private TypedQuery<Book> query(Example<Book> example, Sort sort) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Book> criteria = builder.createQuery(Book.class);
+        Root<Book> root = criteria.from(Book.class);
+        Predicate predicate = QueryByExamplePredicateBuilder.getPredicate(root, builder, example);
+        if (predicate != null) {
+            criteria.where(predicate);
+        }
+        criteria.orderBy(QueryUtils.toOrders(sort, root, builder));
+        return entityManager.createQuery(criteria);
+    }
+}
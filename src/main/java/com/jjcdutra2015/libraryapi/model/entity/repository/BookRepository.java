@@ -1,12 +1,45 @@
 package com.jjcdutra2015.libraryapi.model.entity.repository;
 
 import com.jjcdutra2015.libraryapi.model.entity.Book;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
-public interface BookRepository extends JpaRepository<Book, Long> {
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_REGION;
+
+public interface BookRepository extends JpaRepository<Book, Long>, BookExampleRepository {
+
+    String STREAM_FETCH_SIZE = "500";
+
     boolean existsByIsbn(String isbn);
 
+    @QueryHints({@QueryHint(name = HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HINT_CACHE_REGION, value = Book.ISBN_QUERY_CACHE_REGION)})
     Optional<Book> findByIsbn(String isbn);
+
+    Page<Book> findByAvailableTrue(Pageable pageable);
+
+    List<Book> findByIsbnIn(Collection<String> isbns);
+
+    @Query(value = "select b.isbn from Book b where b.isbn in :isbns")
+    List<String> findIsbnsIn(@Param("isbns") Collection<String> isbns);
+
+    @Query(value = "select b from Book b where b.id > :after " +
+            " and (:title is null or lower(b.title) like lower(concat('%', :title, '%'))) " +
+            " and (:author is null or lower(b.author) like lower(concat('%', :author, '%'))) " +
+            " and (:isbn is null or lower(b.isbn) like lower(concat('%', :isbn, '%'))) " +
+            " order by b.id")
+    Slice<Book> findAfter(@Param("after") Long after, @Param("title") String title,
+                          @Param("author") String author, @Param("isbn") String isbn, Pageable pageable);
 }
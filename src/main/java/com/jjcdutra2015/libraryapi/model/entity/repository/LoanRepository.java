@@ -2,19 +2,63 @@ package com.jjcdutra2015.libraryapi.model.entity.repository;
 
 import com.jjcdutra2015.libraryapi.model.entity.Book;
 import com.jjcdutra2015.libraryapi.model.entity.Loan;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
-public interface LoanRepository extends JpaRepository<Loan, Long> {
+import java.time.LocalDate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface LoanRepository extends JpaRepository<Loan, Long>, LoanSearchRepository, LoanStore {
+
+    // LoanSearchRepository is listed itself because Spring Data only looks up fragments of direct
+    // super-interfaces; these two are redeclared so calls are not ambiguous with JpaRepository
+    @Override
+    <S extends Loan> S saveAndFlush(S loan);
+
+    @Override
+    <S extends Loan> List<S> saveAllAndFlush(Iterable<S> loans);
+
+    @Override
+    Optional<Loan> findById(Long id);
 
     @Query(value = "select case when (count(l.id) > 0) then true else false end " +
             " from Loan l where l.book = :book and (l.returned is null or l.returned is false)")
     boolean existsByBookAndNotReturned(@Param("book") Book book);
 
-    @Query(value = "select l from Loan l join l.book b where b.isbn = :isbn or l.customer = :customer")
-    Page<Loan> findByBookIsbnOrCustomer(
-            @Param("isbn") String isbn, @Param("customer") String customer, Pageable pageable);
+    @Override
+    @Query("select l from Loan l join fetch l.book where l.id in :ids")
+    List<Loan> findWithBookByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Ordered like idx_loan_returned_loan_date so the index serves both the range and the sort
+    @Override
+    @Query(value = "select l from Loan l join fetch l.book " +
+            " where l.returned = false and l.loanDate < :cutoff " +
+            " and (l.loanDate > :afterDate or (l.loanDate = :afterDate and l.id > :afterId)) " +
+            " order by l.loanDate, l.id")
+    Slice<Loan> findOverdueAfter(@Param("cutoff") LocalDate cutoff, @Param("afterDate") LocalDate afterDate,
+            @Param("afterId") Long afterId, Pageable pageable);
+
+    // Returned loans due for the archive, in idx_loan_returned_loan_date order
+    @Override
+    @Query("select l.id from Loan l where l.returned = true and l.loanDate < :cutoff order by l.loanDate, l.id")
+    List<Long> findArchivableIds(@Param("cutoff") LocalDate cutoff, Pageable pageable);
+
+    // One INSERT ... SELECT per chunk; the loans never pass through the session
+    @Override
+    @Modifying
+    @Query("insert into ArchivedLoan (id, customer, book, loanDate) " +
+            " select l.id, l.customer, l.book, l.loanDate from Loan l where l.id in :ids")
+    int copyToArchive(@Param("ids") Collection<Long> ids);
+
+    @Override
+    @Modifying
+    @Query("delete from Loan l where l.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,25 @@
+package com.jjcdutra2015.libraryapi.model.entity.repository;
+
+import com.jjcdutra2015.libraryapi.model.entity.Loan;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+/**
+ * Loan search by book isbn and/or customer. Blank filters are ignored; with both present a loan
+ * matching either one is returned. Results follow the pageable's sort, see {@link LoanSort}, or id order
+ * when it has none; {@link #searchAfter} always reads in id order.
+ */
+public interface LoanSearchRepository {
+
+    Page<Loan> search(String isbn, String customer, Pageable pageable);
+
+    /**
+     * The page without its total; one extra row is fetched to tell whether a next page exists.
+     */
+    Slice<Loan> searchSlice(String isbn, String customer, Pageable pageable);
+
+    Slice<Loan> searchAfter(Long after, String isbn, String customer, Pageable pageable);
+
+    long countSearch(String isbn, String customer);
+}
@@ -0,0 +1,156 @@
+package com.jjcdutra2015.libraryapi.model.entity.repository;
+
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.Loan;
+import org.hibernate.query.NativeQuery;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * Builds the loan search from the filters actually given. A single filter becomes one indexed lookup
+ * (uk_book_isbn then idx_loan_book_returned, or idx_loan_customer); both filters become a UNION of
+ * those two lookups instead of an OR across the join, which would scan the loan table.
+ */
+@Transactional(readOnly = true)
+public class LoanSearchRepositoryImpl implements LoanSearchRepository {
+
+    private EntityManager entityManager;
+
+    public LoanSearchRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Page<Loan> search(String isbn, String customer, Pageable pageable) {
+        List<Loan> content = find(isbn, customer, null, pageable.getSort(), (int) pageable.getOffset(),
+                pageable.getPageSize());
+        return PageableExecutionUtils.getPage(content, pageable, () -> countSearch(isbn, customer));
+    }
+
+    @Override
+    public Slice<Loan> searchSlice(String isbn, String customer, Pageable pageable) {
+        return slice(find(isbn, customer, null, pageable.getSort(), (int) pageable.getOffset(),
+                pageable.getPageSize() + 1), pageable);
+    }
+
+    @Override
+    public Slice<Loan> searchAfter(Long after, String isbn, String customer, Pageable pageable) {
+        return slice(find(isbn, customer, after, Sort.unsorted(), 0, pageable.getPageSize() + 1), pageable);
+    }
+
+    @Override
+    public long countSearch(String isbn, String customer) {
+        if (hasText(isbn) && hasText(customer)) {
+            Query query = nativeQuery("select count(*) from (" + unionIds(null, Sort.unsorted()) + ") ids", isbn, customer, null);
+            return ((Number) query.getSingleResult()).longValue();
+        }
+        // Only join book when filtering on it, so a customer count stays inside idx_loan_customer
+        String join = hasText(isbn) ? " join l.book b" : "";
+        TypedQuery<Long> query = entityManager.createQuery(
+                "select count(l) from Loan l" + join + where(isbn, customer, null), Long.class);
+        bind(query, isbn, customer, null);
+        return query.getSingleResult();
+    }
+
+    private List<Loan> find(String isbn, String customer, Long after, Sort sort, int offset, int limit) {
+        if (hasText(isbn) && hasText(customer)) {
+            List<?> rows = nativeQuery(unionIds(after, sort) + LoanSort.sql(sort), isbn, customer, after)
+                    .setFirstResult(offset)
+                    .setMaxResults(limit)
+                    .getResultList();
+            // The id comes first, alone or followed by the columns the rows are ordered by
+            List<Long> ids = rows.stream()
+                    .map(row -> ((Number) (row instanceof Object[] ? ((Object[]) row)[0] : row)).longValue())
+                    .collect(Collectors.toList());
+            return fetchByIds(ids, sort);
+        }
+        TypedQuery<Loan> query = entityManager.createQuery("select l from Loan l join fetch l.book b"
+                + where(isbn, customer, after) + LoanSort.jpql(sort, "l"), Loan.class);
+        bind(query, isbn, customer, after);
+        return query.setFirstResult(offset).setMaxResults(limit).getResultList();
+    }
+
+    private List<Loan> fetchByIds(List<Long> ids, Sort sort) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Loan> loans = entityManager
+                .createQuery("select l from Loan l join fetch l.book where l.id in :ids", Loan.class)
+                .setParameter("ids", ids)
+                .getResultList()
+                .stream()
+                .collect(Collectors.toMap(Loan::getId, Function.identity()));
+        List<Loan> ordered = new ArrayList<>(loans.values());
+        ordered.sort(LoanSort.comparator(sort));
+        return ordered;
+    }
+
+    private static Slice<Loan> slice(List<Loan> content, Pageable pageable) {
+        int size = pageable.getPageSize();
+        boolean hasNext = content.size() > size;
+        return new SliceImpl<>(hasNext ? content.subList(0, size) : content, pageable, hasNext);
+    }
+
+    private Query nativeQuery(String sql, String isbn, String customer, Long after) {
+        Query query = entityManager.createNativeQuery(sql);
+        // Lets Hibernate auto-flush only pending loan and book changes instead of the whole session
+        query.unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(Loan.class)
+                .addSynchronizedEntityClass(Book.class);
+        bind(query, isbn, customer, after);
+        return query;
+    }
+
+    private static String unionIds(Long after, Sort sort) {
+        String range = after != null ? " and l.id > :after" : "";
+        String columns = Stream.concat(Stream.of("id"), LoanSort.columns(sort).stream())
+                .distinct()
+                .map(column -> "l." + column)
+                .collect(Collectors.joining(", "));
+        return "select " + columns + " from loan l join book b on b.id = l.id_book where b.isbn = :isbn" + range +
+                " union select " + columns + " from loan l where l.customer = :customer" + range;
+    }
+
+    private static String where(String isbn, String customer, Long after) {
+        List<String> predicates = new ArrayList<>();
+        if (after != null) {
+            predicates.add("l.id > :after");
+        }
+        if (hasText(isbn)) {
+            predicates.add("b.isbn = :isbn");
+        }
+        if (hasText(customer)) {
+            predicates.add("l.customer = :customer");
+        }
+        return predicates.isEmpty() ? "" : " where " + String.join(" and ", predicates);
+    }
+
+    private static void bind(Query query, String isbn, String customer, Long after) {
+        if (after != null) {
+            query.setParameter("after", after);
+        }
+        if (hasText(isbn)) {
+            query.setParameter("isbn", isbn);
+        }
+        if (hasText(customer)) {
+            query.setParameter("customer", customer);
+        }
+    }
+}
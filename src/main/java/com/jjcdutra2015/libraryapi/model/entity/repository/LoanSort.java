@@ -0,0 +1,92 @@
+package com.jjcdutra2015.libraryapi.model.entity.repository;
+
+import com.jjcdutra2015.libraryapi.exception.BusinessException;
+import com.jjcdutra2015.libraryapi.model.entity.Loan;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * The orders a loan search accepts. Id always ends the order, so pages never overlap when other rows tie.
+ * Nulls come first ascending and last descending, in SQL and in the merges done in memory alike.
+ */
+public final class LoanSort {
+
+    private static final Map<String, String> COLUMNS = Map.of(
+            "id", "id",
+            "customer", "customer",
+            "loanDate", "loan_date",
+            "returned", "returned");
+
+    private static final Map<String, Function<Loan, Comparable<?>>> VALUES = Map.of(
+            "id", Loan::getId,
+            "customer", Loan::getCustomer,
+            "loanDate", Loan::getLoanDate,
+            "returned", Loan::getReturned);
+
+    private LoanSort() {
+    }
+
+    /**
+     * The requested orders up to the first one on id, followed by id ascending when none was.
+     *
+     * @throws BusinessException when a property is not one loans can be sorted by
+     */
+    public static List<Sort.Order> orders(Sort sort) {
+        List<Sort.Order> orders = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            if (!COLUMNS.containsKey(order.getProperty())) {
+                throw new BusinessException("Loans cannot be sorted by " + order.getProperty());
+            }
+            orders.add(order);
+            if (order.getProperty().equals("id")) {
+                return orders;
+            }
+        }
+        orders.add(Sort.Order.asc("id"));
+        return orders;
+    }
+
+    public static boolean isById(Sort sort) {
+        List<Sort.Order> orders = orders(sort);
+        return orders.size() == 1 && orders.get(0).isAscending();
+    }
+
+    /**
+     * The columns the order reads, which a UNION has to select to be ordered by them.
+     */
+    public static List<String> columns(Sort sort) {
+        return orders(sort).stream().map(order -> COLUMNS.get(order.getProperty())).collect(Collectors.toList());
+    }
+
+    public static String jpql(Sort sort, String alias) {
+        return orderBy(sort, order -> alias + "." + order.getProperty());
+    }
+
+    public static String sql(Sort sort) {
+        return orderBy(sort, order -> COLUMNS.get(order.getProperty()));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Comparator<Loan> comparator(Sort sort) {
+        Comparator<Loan> comparator = null;
+        for (Sort.Order order : orders(sort)) {
+            Function<Loan, Comparable> value = (Function) VALUES.get(order.getProperty());
+            Comparator<Comparable> nullsFirst = Comparator.nullsFirst(Comparator.naturalOrder());
+            Comparator<Loan> next = Comparator.comparing(value, order.isAscending() ? nullsFirst : nullsFirst.reversed());
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        return comparator;
+    }
+
+    private static String orderBy(Sort sort, Function<Sort.Order, String> expression) {
+        return " order by " + orders(sort).stream()
+                .map(order -> expression.apply(order) + (order.isAscending() ? " asc nulls first" : " desc nulls last"))
+                .collect(Collectors.joining(", "));
+    }
+}
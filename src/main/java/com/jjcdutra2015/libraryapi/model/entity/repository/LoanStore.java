@@ -0,0 +1,45 @@
+package com.jjcdutra2015.libraryapi.model.entity.repository;
+
+import com.jjcdutra2015.libraryapi.model.entity.Loan;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The loan storage every loan service works against: {@link LoanRepository}, or the loan shards when
+ * {@code library.loans.shards.urls} is set. Services must not inject {@link LoanRepository} directly, or
+ * they miss the loans once these live in the shards.
+ */
+public interface LoanStore extends LoanSearchRepository {
+
+    <S extends Loan> S saveAndFlush(S loan);
+
+    <S extends Loan> List<S> saveAllAndFlush(Iterable<S> loans);
+
+    Optional<Loan> findById(Long id);
+
+    List<Loan> findWithBookByIdIn(Collection<Long> ids);
+
+    long count();
+
+    /**
+     * Loans not returned and taken before {@code cutoff}, ordered by loan date and id, after the given position.
+     */
+    Slice<Loan> findOverdueAfter(LocalDate cutoff, LocalDate afterDate, Long afterId, Pageable pageable);
+
+    /**
+     * Ids of returned loans taken before {@code cutoff}, ordered by loan date and id.
+     */
+    List<Long> findArchivableIds(LocalDate cutoff, Pageable pageable);
+
+    /**
+     * Copies the loans into {@code loan_archive}, which lives in the main database.
+     */
+    int copyToArchive(Collection<Long> ids);
+
+    int deleteByIdIn(Collection<Long> ids);
+}
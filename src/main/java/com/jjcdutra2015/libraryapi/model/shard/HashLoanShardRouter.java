@@ -0,0 +1,19 @@
+package com.jjcdutra2015.libraryapi.model.shard;
+
+public class HashLoanShardRouter implements LoanShardRouter {
+
+    @Override
+    public int shardOf(Long bookId, int shards) {
+        return Math.floorMod(Long.hashCode(mix(bookId)), shards);
+    }
+
+    // MurmurHash3 finalizer: ids handed out in blocks by the pooled-lo generator still spread evenly
+    static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb3fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,11 @@
+package com.jjcdutra2015.libraryapi.model.shard;
+
+/**
+ * Places a book, and with it every loan of that book, on one of the loan shards. Declare a bean of
+ * this type to replace {@link HashLoanShardRouter}; changing the placement of existing books needs
+ * their loans moved.
+ */
+public interface LoanShardRouter {
+
+    int shardOf(Long bookId, int shards);
+}
@@ -0,0 +1,85 @@
+package com.jjcdutra2015.libraryapi.model.shard;
+
+import com.jjcdutra2015.libraryapi.model.entity.repository.BookRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves loans out of the main database into one shard per url in {@code library.loans.shards.urls},
+ * each migrated from {@code db/shard} at startup. Pool settings, credentials included, go under
+ * {@code library.loans.shards.hikari}. The shard count is part of every loan id, so it cannot change
+ * once loans were written.
+ * <p>
+ * Loans are not moved over: startup fails while the main {@code loan} table still holds any. Archived
+ * loans stay in the main database with their ids, so each shard's sequence is moved past them.
+ */
+@Configuration
+@ConditionalOnProperty(name = "library.loans.shards.urls")
+public class LoanShardingConfig {
+
+    static final String SHARDS_PREFIX = "library.loans.shards";
+
+    @Bean
+    @ConditionalOnMissingBean
+    public LoanShardRouter loanShardRouter() {
+        return new HashLoanShardRouter();
+    }
+
+    @Bean
+    @Primary
+    public ShardedLoanRepository shardedLoanRepository(@Value("${library.loans.shards.urls}") List<String> urls,
+                                                       Environment environment,
+                                                       LoanShardRouter router,
+                                                       BookRepository bookRepository,
+                                                       DataSource mainDataSource) {
+        JdbcTemplate main = new JdbcTemplate(mainDataSource);
+        checkNoMainLoans(main);
+        long maxArchivedId = main.queryForObject("select coalesce(max(id), 0) from loan_archive", Long.class);
+
+        Binder binder = Binder.get(environment);
+        List<DataSource> dataSources = new ArrayList<>();
+        for (String url : urls) {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setJdbcUrl(url);
+            dataSource.setPoolName("loan-shard-" + dataSources.size());
+            binder.bind(SHARDS_PREFIX + ".hikari", Bindable.ofInstance(dataSource));
+            Flyway.configure().dataSource(dataSource).locations("classpath:db/shard").load().migrate();
+            dataSources.add(dataSource);
+        }
+        for (DataSource dataSource : dataSources) {
+            skipArchivedIds(new JdbcTemplate(dataSource), maxArchivedId, urls.size());
+        }
+        return new ShardedLoanRepository(dataSources, router, bookRepository, mainDataSource);
+    }
+
+    // Loans left behind would vanish from every lookup, and their ids could come back from a shard
+    static void checkNoMainLoans(JdbcTemplate main) {
+        long loans = main.queryForObject("select count(*) from loan", Long.class);
+        if (loans > 0) {
+            throw new IllegalStateException(loans + " loans are still in the main database; move them to the shards "
+                    + "before setting " + SHARDS_PREFIX + ".urls");
+        }
+    }
+
+    // Shard ids are sequence * shards + shard, so a sequence past maxArchivedId / shards never hands out an archived id
+    static void skipArchivedIds(JdbcTemplate shard, long maxArchivedId, int shards) {
+        long next = shard.queryForObject("select nextval('loan_seq')", Long.class);
+        if (next * shards <= maxArchivedId) {
+            shard.execute("alter sequence loan_seq restart with " + (maxArchivedId / shards + 1));
+        }
+    }
+}
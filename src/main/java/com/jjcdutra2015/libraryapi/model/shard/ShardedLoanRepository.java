@@ -0,0 +1,487 @@
+package com.jjcdutra2015.libraryapi.model.shard;
+
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.Loan;
+import com.jjcdutra2015.libraryapi.model.entity.repository.BookRepository;
+import com.jjcdutra2015.libraryapi.model.entity.repository.LoanSort;
+import com.jjcdutra2015.libraryapi.model.entity.repository.LoanStore;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * Loans spread over several databases by {@link LoanShardRouter}, with books left in the main one. Ids
+ * are {@code sequence * shards + shard}, so a lookup by id reads a single shard, as does an isbn search.
+ * A customer search or an unfiltered listing asks every shard in parallel for its first
+ * {@code offset + size} rows and merges them by id.
+ * <p>
+ * Shard writes are not part of the caller's JPA transaction. When that transaction rolls back, an insert
+ * is deleted again, and updated or deleted rows are put back as they were read just before the write.
+ * Each write bumps the row's {@code version}, and an undo only applies while the row still holds what
+ * the rolled back write left: a row changed by someone else since is kept, and the undo fails with an
+ * {@link OptimisticLockingFailureException} that Spring logs after the rollback.
+ * Archived copies go to {@code loan_archive} in the main database, inside the caller's transaction.
+ */
+public class ShardedLoanRepository implements LoanStore, DisposableBean {
+
+    private static final String COLUMNS = "id, customer, id_book, loan_date, returned, active_book_id";
+
+    private static final String INSERT = "insert into loan (" + COLUMNS + ") "
+            + "values (:id, :customer, :book, :loanDate, :returned, :activeBook)";
+
+    private static final String UPDATE = "update loan set customer = :customer, loan_date = :loanDate, "
+            + "returned = :returned, active_book_id = :activeBook, version = version + 1 "
+            + "where id = :id and version = :version";
+
+    // Puts back both the row and its version, so an earlier write of the same transaction can be undone next
+    private static final String UNDO_UPDATE = "update loan set customer = :customer, loan_date = :loanDate, "
+            + "returned = :returned, active_book_id = :activeBook, version = :previous "
+            + "where id = :id and version = :version";
+
+    private static final String RESTORE = "insert into loan (" + COLUMNS + ", version) "
+            + "values (:id, :customer, :book, :loanDate, :returned, :activeBook, :version)";
+
+    private static final Comparator<Loan> BY_LOAN_DATE = Comparator.comparing(Loan::getLoanDate)
+            .thenComparingLong(Loan::getId);
+
+    private static final RowMapper<Loan> LOAN_MAPPER = (rs, row) -> Loan.builder()
+            .id(rs.getLong("id"))
+            .customer(rs.getString("customer"))
+            .book(Book.builder().id(rs.getLong("id_book")).build())
+            .loanDate(rs.getObject("loan_date", LocalDate.class))
+            .returned(rs.getBoolean("returned"))
+            .activeBookId(rs.getObject("active_book_id", Long.class))
+            .build();
+
+    private static final RowMapper<Snapshot> SNAPSHOT_MAPPER = (rs, row) ->
+            new Snapshot(LOAN_MAPPER.mapRow(rs, row), rs.getLong("version"));
+
+    private final List<DataSource> dataSources;
+    private final List<NamedParameterJdbcTemplate> shards;
+    private final LoanShardRouter router;
+    private final BookRepository bookRepository;
+    private final NamedParameterJdbcTemplate main;
+    private final ExecutorService executor;
+
+    /**
+     * Takes ownership of {@code dataSources}: those that are {@link Closeable} are closed with the repository.
+     * {@code mainDataSource} is the one holding books and the loan archive.
+     */
+    public ShardedLoanRepository(List<DataSource> dataSources, LoanShardRouter router, BookRepository bookRepository,
+                                 DataSource mainDataSource) {
+        this.dataSources = dataSources;
+        this.shards = dataSources.stream().map(NamedParameterJdbcTemplate::new).collect(Collectors.toList());
+        this.router = router;
+        this.bookRepository = bookRepository;
+        this.main = new NamedParameterJdbcTemplate(mainDataSource);
+        // A thread per shard connection: more would only wait for a connection, fewer would make concurrent
+        // requests queue behind each other for the fan-out
+        int threads = dataSources.stream().mapToInt(ShardedLoanRepository::poolSize).sum();
+        this.executor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("loan-shard-"));
+    }
+
+    @Override
+    public <S extends Loan> S saveAndFlush(S loan) {
+        loan.syncActiveBookId();
+        if (loan.getId() == null) {
+            insert(loan);
+        } else {
+            update(loan);
+        }
+        return loan;
+    }
+
+    @Override
+    public <S extends Loan> List<S> saveAllAndFlush(Iterable<S> loans) {
+        List<S> saved = new ArrayList<>();
+        loans.forEach(loan -> saved.add(saveAndFlush(loan)));
+        return saved;
+    }
+
+    @Override
+    public Optional<Loan> findById(Long id) {
+        List<Loan> loans = shardOfLoan(id).query("select " + COLUMNS + " from loan where id = :id",
+                new MapSqlParameterSource("id", id), LOAN_MAPPER);
+        return withBooks(loans).stream().findFirst();
+    }
+
+    @Override
+    public List<Loan> findWithBookByIdIn(Collection<Long> ids) {
+        return withBooks(findAllById(ids));
+    }
+
+    @Override
+    public long count() {
+        return countSearch(null, null);
+    }
+
+    @Override
+    public Slice<Loan> findOverdueAfter(LocalDate cutoff, LocalDate afterDate, Long afterId, Pageable pageable) {
+        int limit = pageable.getPageSize() + 1;
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("cutoff", cutoff)
+                .addValue("afterDate", afterDate)
+                .addValue("afterId", afterId);
+        List<Loan> loans = everyShard(jdbc -> jdbc.query("select " + COLUMNS + " from loan " +
+                "where returned = false and loan_date < :cutoff " +
+                "and (loan_date > :afterDate or (loan_date = :afterDate and id > :afterId)) " +
+                "order by loan_date, id limit " + limit, parameters, LOAN_MAPPER))
+                .stream()
+                .flatMap(List::stream)
+                .sorted(BY_LOAN_DATE)
+                .limit(limit)
+                .collect(Collectors.toList());
+        return slice(withBooks(loans), pageable);
+    }
+
+    @Override
+    public List<Long> findArchivableIds(LocalDate cutoff, Pageable pageable) {
+        int limit = pageable.getPageSize();
+        MapSqlParameterSource parameters = new MapSqlParameterSource("cutoff", cutoff);
+        return everyShard(jdbc -> jdbc.query("select " + COLUMNS + " from loan " +
+                "where returned = true and loan_date < :cutoff order by loan_date, id limit " + limit, parameters, LOAN_MAPPER))
+                .stream()
+                .flatMap(List::stream)
+                .sorted(BY_LOAN_DATE)
+                .limit(limit)
+                .map(Loan::getId)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public int copyToArchive(Collection<Long> ids) {
+        SqlParameterSource[] rows = findAllById(ids).stream()
+                .map(loan -> parameters(loan).addValue("id", loan.getId()))
+                .toArray(SqlParameterSource[]::new);
+        main.batchUpdate("insert into loan_archive (id, customer, id_book, loan_date) " +
+                "values (:id, :customer, :book, :loanDate)", rows);
+        return rows.length;
+    }
+
+    // Only rows still as they were read are deleted; a row changed in between fails the whole call
+    @Override
+    public int deleteByIdIn(Collection<Long> ids) {
+        List<Snapshot> deleted = new ArrayList<>();
+        int read = 0;
+        for (Map.Entry<NamedParameterJdbcTemplate, List<Long>> shard : byShard(ids).entrySet()) {
+            NamedParameterJdbcTemplate jdbc = shard.getKey();
+            List<Snapshot> previous = jdbc.query("select " + COLUMNS + ", version from loan where id in (:ids)",
+                    new MapSqlParameterSource("ids", shard.getValue()), SNAPSHOT_MAPPER);
+            read += previous.size();
+            int[] counts = jdbc.batchUpdate("delete from loan where id = :id and version = :version", previous.stream()
+                    .map(snapshot -> new MapSqlParameterSource("id", snapshot.loan.getId()).addValue("version", snapshot.version))
+                    .toArray(SqlParameterSource[]::new));
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    deleted.add(previous.get(i));
+                }
+            }
+        }
+        // Ids are never reused, so a deleted row can be put back as it was
+        onRollback(() -> deleted.forEach(snapshot -> shardOfLoan(snapshot.loan.getId()).update(RESTORE,
+                parameters(snapshot.loan).addValue("id", snapshot.loan.getId()).addValue("version", snapshot.version))));
+        if (deleted.size() < read) {
+            throw new OptimisticLockingFailureException((read - deleted.size()) + " loans changed while being deleted");
+        }
+        return deleted.size();
+    }
+
+    @Override
+    public Page<Loan> search(String isbn, String customer, Pageable pageable) {
+        List<Loan> content = find(isbn, customer, null, pageable.getSort(), (int) pageable.getOffset(),
+                pageable.getPageSize());
+        return PageableExecutionUtils.getPage(content, pageable, () -> countSearch(isbn, customer));
+    }
+
+    @Override
+    public Slice<Loan> searchSlice(String isbn, String customer, Pageable pageable) {
+        return slice(find(isbn, customer, null, pageable.getSort(), (int) pageable.getOffset(),
+                pageable.getPageSize() + 1), pageable);
+    }
+
+    @Override
+    public Slice<Loan> searchAfter(Long after, String isbn, String customer, Pageable pageable) {
+        return slice(find(isbn, customer, after, Sort.unsorted(), 0, pageable.getPageSize() + 1), pageable);
+    }
+
+    @Override
+    public long countSearch(String isbn, String customer) {
+        return scatter(isbn, customer, null, (jdbc, sql, parameters) ->
+                jdbc.queryForObject("select count(*) from (" + sql + ") loans", parameters, Long.class))
+                .stream()
+                .mapToLong(Long::longValue)
+                .sum();
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        executor.shutdown();
+        for (DataSource dataSource : dataSources) {
+            if (dataSource instanceof Closeable) {
+                ((Closeable) dataSource).close();
+            }
+        }
+    }
+
+    private void insert(Loan loan) {
+        int shard = router.shardOf(loan.getBook().getId(), shards.size());
+        NamedParameterJdbcTemplate jdbc = shards.get(shard);
+        long id = jdbc.getJdbcTemplate().queryForObject("select nextval('loan_seq')", Long.class) * shards.size() + shard;
+        jdbc.update(INSERT, parameters(loan).addValue("id", id));
+        loan.setId(id);
+        onRollback(() -> undone(jdbc.update("delete from loan where id = :id and version = 0",
+                new MapSqlParameterSource("id", id)), id));
+    }
+
+    // The book is left alone: moving it would put the loan on a shard its router no longer points to
+    private void update(Loan loan) {
+        Long id = loan.getId();
+        NamedParameterJdbcTemplate jdbc = shardOfLoan(id);
+        Snapshot before = jdbc.query("select " + COLUMNS + ", version from loan where id = :id",
+                new MapSqlParameterSource("id", id), SNAPSHOT_MAPPER).stream()
+                .findFirst()
+                .orElseThrow(() -> new EmptyResultDataAccessException("Loan " + id + " not found", 1));
+        int updated = jdbc.update(UPDATE, parameters(loan).addValue("id", id).addValue("version", before.version));
+        if (updated == 0) {
+            throw new OptimisticLockingFailureException("Loan " + id + " changed while being updated");
+        }
+        onRollback(() -> undone(jdbc.update(UNDO_UPDATE, parameters(before.loan).addValue("id", id)
+                .addValue("previous", before.version).addValue("version", before.version + 1)), id));
+    }
+
+    private static void undone(int rows, Long id) {
+        if (rows == 0) {
+            throw new OptimisticLockingFailureException("Loan " + id + " changed after a write that rolled back; "
+                    + "the write was not undone");
+        }
+    }
+
+    // Runs undo if the caller's transaction rolls back; without one the write simply stands
+    private static void onRollback(Runnable undo) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Undo undos = TransactionSynchronizationManager.getSynchronizations().stream()
+                .filter(Undo.class::isInstance)
+                .map(Undo.class::cast)
+                .findFirst()
+                .orElseGet(() -> {
+                    Undo created = new Undo();
+                    TransactionSynchronizationManager.registerSynchronization(created);
+                    return created;
+                });
+        undos.writes.push(undo);
+    }
+
+    private List<Loan> findAllById(Collection<Long> ids) {
+        List<Loan> loans = new ArrayList<>();
+        for (Map.Entry<NamedParameterJdbcTemplate, List<Long>> shard : byShard(ids).entrySet()) {
+            loans.addAll(shard.getKey().query("select " + COLUMNS + " from loan where id in (:ids)",
+                    new MapSqlParameterSource("ids", shard.getValue()), LOAN_MAPPER));
+        }
+        return loans;
+    }
+
+    private Map<NamedParameterJdbcTemplate, List<Long>> byShard(Collection<Long> ids) {
+        return ids.stream().collect(Collectors.groupingBy(this::shardOfLoan));
+    }
+
+    private List<Loan> find(String isbn, String customer, Long after, Sort sort, int offset, int limit) {
+        List<Loan> loans = scatter(isbn, customer, after, (jdbc, sql, parameters) ->
+                jdbc.query(sql + LoanSort.sql(sort) + " limit " + (offset + limit), parameters, LOAN_MAPPER))
+                .stream()
+                .flatMap(List::stream)
+                .sorted(LoanSort.comparator(sort))
+                .skip(offset)
+                .limit(limit)
+                .collect(Collectors.toList());
+        return withBooks(loans);
+    }
+
+    private <T> List<T> scatter(String isbn, String customer, Long after, ShardQuery<T> query) {
+        Long bookId = null;
+        if (hasText(isbn)) {
+            bookId = bookRepository.findByIsbn(isbn).map(Book::getId).orElse(null);
+            if (bookId == null && !hasText(customer)) {
+                return Collections.emptyList();
+            }
+        }
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("book", bookId)
+                .addValue("customer", customer)
+                .addValue("after", after);
+        int bookShard = bookId != null ? router.shardOf(bookId, shards.size()) : -1;
+
+        List<Supplier<T>> queries = new ArrayList<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            List<String> predicates = new ArrayList<>();
+            if (shard == bookShard) {
+                predicates.add("id_book = :book");
+            }
+            if (hasText(customer)) {
+                predicates.add("customer = :customer");
+            }
+            // Filtering on a book that lives on another shard
+            if (predicates.isEmpty() && hasText(isbn)) {
+                continue;
+            }
+            NamedParameterJdbcTemplate jdbc = shards.get(shard);
+            String sql = select(predicates, after);
+            queries.add(() -> query.run(jdbc, sql, parameters));
+        }
+        return fanOut(queries);
+    }
+
+    private <T> List<T> everyShard(Function<NamedParameterJdbcTemplate, T> query) {
+        return fanOut(shards.stream()
+                .map(jdbc -> (Supplier<T>) () -> query.apply(jdbc))
+                .collect(Collectors.toList()));
+    }
+
+    // The last query runs on the caller, which would otherwise just wait for the others
+    private <T> List<T> fanOut(List<Supplier<T>> queries) {
+        if (queries.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<CompletableFuture<T>> results = new ArrayList<>();
+        for (Supplier<T> query : queries.subList(0, queries.size() - 1)) {
+            results.add(CompletableFuture.supplyAsync(query, executor));
+        }
+        T last = queries.get(queries.size() - 1).get();
+        try {
+            List<T> joined = results.stream().map(CompletableFuture::join).collect(Collectors.toList());
+            joined.add(last);
+            return joined;
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    private static int poolSize(DataSource dataSource) {
+        return dataSource instanceof HikariDataSource ? ((HikariDataSource) dataSource).getMaximumPoolSize() : 1;
+    }
+
+    // A UNION per filter, as in LoanSearchRepositoryImpl, so each one stays on its own index
+    private static String select(List<String> predicates, Long after) {
+        String range = after != null ? "id > :after" : null;
+        if (predicates.isEmpty()) {
+            return "select " + COLUMNS + " from loan" + (range != null ? " where " + range : "");
+        }
+        return predicates.stream()
+                .map(predicate -> "select " + COLUMNS + " from loan where " + predicate + (range != null ? " and " + range : ""))
+                .collect(Collectors.joining(" union "));
+    }
+
+    private List<Loan> withBooks(List<Loan> loans) {
+        Set<Long> bookIds = loans.stream().map(loan -> loan.getBook().getId()).collect(Collectors.toSet());
+        if (bookIds.isEmpty()) {
+            return loans;
+        }
+        Map<Long, Book> books = bookRepository.findAllById(bookIds).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        loans.forEach(loan -> loan.setBook(books.getOrDefault(loan.getBook().getId(), loan.getBook())));
+        return loans;
+    }
+
+    private NamedParameterJdbcTemplate shardOfLoan(Long id) {
+        return shards.get(Math.floorMod(id, shards.size()));
+    }
+
+    private static MapSqlParameterSource parameters(Loan loan) {
+        return new MapSqlParameterSource()
+                .addValue("customer", loan.getCustomer())
+                .addValue("book", loan.getBook().getId())
+                .addValue("loanDate", loan.getLoanDate())
+                .addValue("returned", loan.getReturned())
+                .addValue("activeBook", loan.getActiveBookId(), Types.BIGINT);
+    }
+
+    private static Slice<Loan> slice(List<Loan> content, Pageable pageable) {
+        int size = pageable.getPageSize();
+        boolean hasNext = content.size() > size;
+        return new SliceImpl<>(hasNext ? content.subList(0, size) : content, pageable, hasNext);
+    }
+
+    // Undoes a transaction's shard writes latest first, so each undo finds the row as its own write left it
+    private static final class Undo implements TransactionSynchronization {
+
+        final Deque<Runnable> writes = new ArrayDeque<>();
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status != STATUS_ROLLED_BACK) {
+                return;
+            }
+            RuntimeException failure = null;
+            for (Runnable write : writes) {
+                try {
+                    write.run();
+                } catch (RuntimeException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    // A row as read before a write, with the version that write replaced
+    private static final class Snapshot {
+
+        final Loan loan;
+        final long version;
+
+        Snapshot(Loan loan, long version) {
+            this.loan = loan;
+            this.version = version;
+        }
+    }
+
+    private interface ShardQuery<T> {
+        T run(NamedParameterJdbcTemplate jdbc, String sql, MapSqlParameterSource parameters);
+    }
+}
@@ -0,0 +1,10 @@
+package com.jjcdutra2015.libraryapi.service;
+
+import com.jjcdutra2015.libraryapi.api.dto.BookImportResultDTO;
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+
+import java.util.Iterator;
+
+public interface BookImportService {
+    BookImportResultDTO importBooks(Iterator<Book> books);
+}
@@ -3,7 +3,10 @@ package com.jjcdutra2015.libraryapi.service;
 import com.jjcdutra2015.libraryapi.model.entity.Book;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface BookService {
@@ -17,5 +20,15 @@ public interface BookService {
 
     Page<Book> find(Book filter, Pageable pageRequest);
 
+    Slice<Book> findSlice(Book filter, Pageable pageRequest);
+
+    Slice<Book> find(Book filter, Long after, int size);
+
+    Page<Book> search(String text, Pageable pageRequest);
+
+    Page<Book> findAvailable(Pageable pageRequest);
+
     Optional<Book> getBookByIsbn(String isbn);
+
+    List<Book> getBooksByIsbn(Collection<String> isbns);
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.jjcdutra2015.libraryapi.service;
+
+import com.jjcdutra2015.libraryapi.api.dto.LoanFilterDTO;
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.Loan;
+
+import java.util.function.Consumer;
+
+public interface ExportService {
+    void forEachBook(Book filter, Consumer<Book> action);
+
+    void forEachLoan(LoanFilterDTO filter, Consumer<Loan> action);
+}
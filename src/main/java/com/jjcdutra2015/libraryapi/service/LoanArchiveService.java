@@ -0,0 +1,5 @@
+package com.jjcdutra2015.libraryapi.service;
+
+public interface LoanArchiveService {
+    int archive();
+}
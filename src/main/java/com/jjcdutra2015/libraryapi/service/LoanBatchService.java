@@ -0,0 +1,13 @@
+package com.jjcdutra2015.libraryapi.service;
+
+import com.jjcdutra2015.libraryapi.api.dto.LoanBatchResultDTO;
+import com.jjcdutra2015.libraryapi.api.dto.LoanReturnDTO;
+import com.jjcdutra2015.libraryapi.api.dto.LoandDTO;
+
+import java.util.List;
+
+public interface LoanBatchService {
+    LoanBatchResultDTO checkout(List<LoandDTO> requests);
+
+    LoanBatchResultDTO updateReturns(List<LoanReturnDTO> returns);
+}
@@ -4,6 +4,7 @@ import com.jjcdutra2015.libraryapi.api.dto.LoanFilterDTO;
 import com.jjcdutra2015.libraryapi.model.entity.Loan;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import java.util.Optional;
 
@@ -15,4 +16,8 @@ public interface LoanService {
     Loan update(Loan loan);
 
     Page<Loan> find(LoanFilterDTO filter, Pageable pageable);
+
+    Slice<Loan> findSlice(LoanFilterDTO filter, Pageable pageable);
+
+    Slice<Loan> find(LoanFilterDTO filter, Long after, int size);
 }
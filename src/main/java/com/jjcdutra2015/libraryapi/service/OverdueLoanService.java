@@ -0,0 +1,12 @@
+package com.jjcdutra2015.libraryapi.service;
+
+import com.jjcdutra2015.libraryapi.model.entity.Loan;
+import org.springframework.data.domain.Slice;
+
+import java.time.LocalDate;
+
+public interface OverdueLoanService {
+    Slice<Loan> findOverdue(LocalDate afterDate, Long afterId, int size);
+
+    int scan();
+}
@@ -0,0 +1,20 @@
+package com.jjcdutra2015.libraryapi.service.archive;
+
+import com.jjcdutra2015.libraryapi.service.LoanArchiveService;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+public class LoanArchiveJob {
+
+    private final LoanArchiveService service;
+
+    public LoanArchiveJob(LoanArchiveService service) {
+        this.service = service;
+    }
+
+    @Scheduled(cron = "${library.loans.archive.cron:0 30 1 * * *}")
+    public void run() {
+        service.archive();
+    }
+}
@@ -0,0 +1,82 @@
+package com.jjcdutra2015.libraryapi.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Maps an isbn to a book id only. The book itself is read by id on every hit, which the second-level
+ * cache answers with a copy of the current state, so callers never share a mutable entity.
+ */
+@Component
+public class BookIsbnCache implements MeterBinder {
+
+    private final Cache<String, Long> cache;
+
+    public BookIsbnCache(@Value("${library.cache.isbn.maximum-size:10000}") long maximumSize,
+                         @Value("${library.cache.isbn.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    public Optional<Book> get(String isbn, Function<String, Optional<Book>> loader, Function<Long, Optional<Book>> byId) {
+        if (isbn == null) {
+            return loader.apply(null);
+        }
+        Long id = cache.getIfPresent(isbn);
+        if (id != null) {
+            // The isbn may have moved to another book or been deleted since the id was cached
+            Optional<Book> book = byId.apply(id).filter(found -> isbn.equals(found.getIsbn()));
+            if (book.isPresent()) {
+                return book;
+            }
+            cache.invalidate(isbn);
+        }
+        // Misses are not cached, so a book created later is found on the next lookup
+        Optional<Book> book = loader.apply(isbn);
+        book.ifPresent(this::put);
+        return book;
+    }
+
+    public void put(Book book) {
+        if (book != null && book.getIsbn() != null && book.getId() != null) {
+            cache.put(book.getIsbn(), book.getId());
+        }
+    }
+
+    // An entry left under an old isbn is dropped by get, once the book read by id no longer matches
+    public void evict(Book book) {
+        if (book != null && book.getIsbn() != null) {
+            cache.invalidate(book.getIsbn());
+        }
+    }
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "book-isbn");
+    }
+}
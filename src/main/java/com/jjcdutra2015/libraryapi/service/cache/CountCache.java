@@ -0,0 +1,65 @@
+package com.jjcdutra2015.libraryapi.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Total-element counts per filter, kept for a short time only: writes are not tracked, so a total can
+ * lag behind by up to {@code library.cache.count.expire-after-write}.
+ */
+@Component
+public class CountCache implements MeterBinder {
+
+    private final Cache<List<?>, Long> cache;
+
+    public CountCache(@Value("${library.cache.count.maximum-size:10000}") long maximumSize,
+                      @Value("${library.cache.count.expire-after-write:30s}") Duration expireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    public long get(List<?> filter, LongSupplier count) {
+        return cache.get(filter, key -> count.getAsLong());
+    }
+
+    /**
+     * Turns a slice fetched with one extra row into a page. The count only runs when the slice cannot
+     * tell the total by itself, i.e. when there are more rows or the page is past the end.
+     */
+    public <T> Page<T> page(Slice<T> slice, List<?> filter, LongSupplier count) {
+        Pageable pageable = slice.getPageable();
+        List<T> content = slice.getContent();
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(content, pageable, content.size());
+        }
+        if (!slice.hasNext() && (!content.isEmpty() || pageable.getOffset() == 0)) {
+            return new PageImpl<>(content, pageable, pageable.getOffset() + content.size());
+        }
+        return new PageImpl<>(content, pageable, get(filter, count));
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "count");
+    }
+}
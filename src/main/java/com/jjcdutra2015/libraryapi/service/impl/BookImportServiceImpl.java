@@ -0,0 +1,177 @@
+package com.jjcdutra2015.libraryapi.service.impl;
+
+import com.jjcdutra2015.libraryapi.api.dto.BookImportItemDTO;
+import com.jjcdutra2015.libraryapi.api.dto.BookImportResultDTO;
+import com.jjcdutra2015.libraryapi.exception.ConstraintViolations;
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.repository.BookRepository;
+import com.jjcdutra2015.libraryapi.service.BookImportService;
+import com.jjcdutra2015.libraryapi.service.search.BookSearchIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+@Service
+public class BookImportServiceImpl implements BookImportService {
+
+    private BookRepository repository;
+    private BookSearchIndex searchIndex;
+    private EntityManager entityManager;
+    private TransactionTemplate transactionTemplate;
+    private int chunkSize;
+
+    public BookImportServiceImpl(BookRepository repository,
+                                 BookSearchIndex searchIndex,
+                                 EntityManager entityManager,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${library.import.chunk-size:1000}") int chunkSize) {
+        this.repository = repository;
+        this.searchIndex = searchIndex;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public BookImportResultDTO importBooks(Iterator<Book> books) {
+        BookImportResultDTO result = BookImportResultDTO.builder().build();
+        List<Book> chunk = new ArrayList<>(chunkSize);
+        int index = 0;
+        int chunkStart = 0;
+
+        while (books.hasNext()) {
+            chunk.add(books.next());
+            index++;
+            if (chunk.size() == chunkSize) {
+                importChunk(chunk, chunkStart, result);
+                chunk.clear();
+                chunkStart = index;
+            }
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, chunkStart, result);
+        }
+        return result;
+    }
+
+    private void importChunk(List<Book> chunk, int chunkStart, BookImportResultDTO result) {
+        List<BookImportItemDTO> items = new ArrayList<>(chunk.size());
+        List<Book> created = new ArrayList<>(chunk.size());
+        try {
+            transactionTemplate.executeWithoutResult(status -> insertChunk(chunk, chunkStart, items, created));
+        } catch (DataIntegrityViolationException e) {
+            items.clear();
+            created.clear();
+            if (ConstraintViolations.isViolationOf(e, Book.ISBN_CONSTRAINT)) {
+                // A concurrent writer took one of the isbns after the check; the retry sees it as a duplicate
+                retryChunk(chunk, chunkStart, items, created);
+            } else {
+                insertEach(chunk, chunkStart, items, created);
+            }
+        } finally {
+            // Keeps an open-in-view persistence context from holding every imported book
+            entityManager.clear();
+        }
+        if (!created.isEmpty()) {
+            searchIndex.index(created);
+        }
+
+        result.setCreated(result.getCreated() + created.size());
+        result.setFailed(result.getFailed() + items.size() - created.size());
+        result.getItems().addAll(items);
+    }
+
+    private void retryChunk(List<Book> chunk, int chunkStart, List<BookImportItemDTO> items, List<Book> created) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> insertChunk(chunk, chunkStart, items, created));
+        } catch (DataIntegrityViolationException e) {
+            items.clear();
+            created.clear();
+            insertEach(chunk, chunkStart, items, created);
+        }
+    }
+
+    // One transaction per book, so a row the database rejects fails alone instead of taking the chunk with it
+    private void insertEach(List<Book> chunk, int chunkStart, List<BookImportItemDTO> items, List<Book> created) {
+        List<Book> checked = new ArrayList<>(chunk.size());
+        transactionTemplate.executeWithoutResult(status -> checkChunk(chunk, chunkStart, items, checked));
+        Iterator<Book> books = checked.iterator();
+        for (BookImportItemDTO item : items) {
+            if (item.getStatus() != BookImportItemDTO.Status.CREATED) {
+                continue;
+            }
+            Book book = books.next();
+            try {
+                transactionTemplate.executeWithoutResult(status -> repository.saveAndFlush(book));
+                created.add(book);
+            } catch (DataIntegrityViolationException e) {
+                if (ConstraintViolations.isViolationOf(e, Book.ISBN_CONSTRAINT)) {
+                    item.setStatus(BookImportItemDTO.Status.DUPLICATE);
+                    item.setMessage("Isbn já cadastrado");
+                } else {
+                    item.setStatus(BookImportItemDTO.Status.FAILED);
+                    item.setMessage(e.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+    }
+
+    private void insertChunk(List<Book> chunk, int chunkStart, List<BookImportItemDTO> items, List<Book> created) {
+        checkChunk(chunk, chunkStart, items, created);
+        if (!created.isEmpty()) {
+            // Sequence ids let Hibernate send these as JDBC batches
+            repository.saveAll(created);
+            repository.flush();
+        }
+    }
+
+    private void checkChunk(List<Book> chunk, int chunkStart, List<BookImportItemDTO> items, List<Book> created) {
+        Set<String> isbns = new HashSet<>();
+        for (Book book : chunk) {
+            if (isValid(book)) {
+                isbns.add(book.getIsbn());
+            }
+        }
+        Set<String> taken = isbns.isEmpty() ? new HashSet<>() : new HashSet<>(repository.findIsbnsIn(isbns));
+
+        for (int i = 0; i < chunk.size(); i++) {
+            Book book = chunk.get(i);
+            BookImportItemDTO item = BookImportItemDTO.builder()
+                    .index(chunkStart + i)
+                    .isbn(book != null ? book.getIsbn() : null)
+                    .build();
+            if (!isValid(book)) {
+                item.setStatus(BookImportItemDTO.Status.INVALID);
+                item.setMessage("Title, author and isbn are required");
+            } else if (!taken.add(book.getIsbn())) {
+                item.setStatus(BookImportItemDTO.Status.DUPLICATE);
+                item.setMessage("Isbn já cadastrado");
+            } else {
+                item.setStatus(BookImportItemDTO.Status.CREATED);
+                // A fresh copy, so a rolled back attempt leaves no id or version behind for the retry
+                created.add(Book.builder().title(book.getTitle()).author(book.getAuthor()).isbn(book.getIsbn()).build());
+            }
+            items.add(item);
+        }
+    }
+
+    private boolean isValid(Book book) {
+        return book != null
+                && hasText(book.getTitle())
+                && hasText(book.getAuthor())
+                && hasText(book.getIsbn());
+    }
+
+    private boolean hasText(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+}
@@ -1,65 +1,163 @@
 package com.jjcdutra2015.libraryapi.service.impl;
 
 import com.jjcdutra2015.libraryapi.exception.BusinessException;
+import com.jjcdutra2015.libraryapi.exception.ConstraintViolations;
 import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.repository.BookExampleRepository;
 import com.jjcdutra2015.libraryapi.model.entity.repository.BookRepository;
 import com.jjcdutra2015.libraryapi.service.BookService;
+import com.jjcdutra2015.libraryapi.service.cache.BookIsbnCache;
+import com.jjcdutra2015.libraryapi.service.cache.CountCache;
+import com.jjcdutra2015.libraryapi.service.search.BookSearchIndex;
+import com.jjcdutra2015.libraryapi.service.search.BookSearchResult;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Example;
-import org.springframework.data.domain.ExampleMatcher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+@Service
 public class BookServiceImpl implements BookService {
 
     private BookRepository repository;
+    private BookIsbnCache isbnCache;
+    private BookSearchIndex searchIndex;
+    private CountCache countCache;
 
-    public BookServiceImpl(BookRepository repository) {
+    public BookServiceImpl(BookRepository repository, BookIsbnCache isbnCache, BookSearchIndex searchIndex,
+                           CountCache countCache) {
         this.repository = repository;
+        this.isbnCache = isbnCache;
+        this.searchIndex = searchIndex;
+        this.countCache = countCache;
     }
 
     @Override
+    @Timed("library.service")
     public Book save(Book book) {
-        if (repository.existsByIsbn(book.getIsbn())) {
-            throw new BusinessException("Isbn já cadastrado");
+        Book savedBook;
+        try {
+            savedBook = repository.saveAndFlush(book);
+        } catch (DataIntegrityViolationException e) {
+            if (ConstraintViolations.isViolationOf(e, Book.ISBN_CONSTRAINT)) {
+                throw new BusinessException("Isbn já cadastrado");
+            }
+            throw e;
         }
-        return repository.save(book);
+        isbnCache.put(savedBook);
+        searchIndex.index(savedBook);
+        return savedBook;
     }
 
     @Override
+    @Timed("library.service")
+    @Transactional(readOnly = true)
     public Optional<Book> getById(Long id) {
         return repository.findById(id);
     }
 
     @Override
+    @Timed("library.service")
     public void delete(Book book) {
         if (book == null || book.getId() == null) {
             throw new IllegalArgumentException("Book cant be null");
         }
         repository.delete(book);
+        isbnCache.evict(book);
+        searchIndex.delete(book.getId());
     }
 
     @Override
+    @Timed("library.service")
     public Book update(Book book) {
         if (book == null || book.getId() == null) {
             throw new IllegalArgumentException("Book cant be null");
         }
-        return repository.save(book);
+        isbnCache.evict(book);
+        Book updatedBook = repository.save(book);
+        isbnCache.put(updatedBook);
+        searchIndex.index(updatedBook);
+        return updatedBook;
     }
 
     @Override
+    @Timed("library.service")
+    @Transactional(readOnly = true)
     public Page<Book> find(Book filter, Pageable pageRequest) {
-        Example<Book> example = Example.of(filter,
-                ExampleMatcher.matching()
-                        .withIgnoreCase()
-                        .withIgnoreNullValues()
-                        .withStringMatcher(ExampleMatcher.StringMatcher.CONTAINING));
-        return repository.findAll(example, pageRequest);
+        Example<Book> example = BookExampleRepository.filter(filter);
+        return countCache.page(repository.findSlice(example, pageRequest),
+                Arrays.asList("book", filter.getId(), filter.getTitle(), filter.getAuthor(), filter.getIsbn()),
+                () -> repository.count(example));
     }
 
     @Override
+    @Timed("library.service")
+    @Transactional(readOnly = true)
+    public Slice<Book> findSlice(Book filter, Pageable pageRequest) {
+        return repository.findSlice(BookExampleRepository.filter(filter), pageRequest);
+    }
+
+    @Override
+    @Timed("library.service")
+    @Transactional(readOnly = true)
+    public Slice<Book> find(Book filter, Long after, int size) {
+        return repository.findAfter(after != null ? after : 0L,
+                filter.getTitle(), filter.getAuthor(), filter.getIsbn(), PageRequest.of(0, size));
+    }
+
+    @Override
+    @Timed("library.service")
+    @Transactional(readOnly = true)
+    public Page<Book> search(String text, Pageable pageRequest) {
+        BookSearchResult result = searchIndex.search(text, pageRequest);
+        Map<Long, Book> books = repository.findAllById(result.getIds()).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+
+        List<Book> content = new ArrayList<>(result.getIds().size());
+        for (Long id : result.getIds()) {
+            Book book = books.get(id);
+            if (book != null) {
+                content.add(book);
+            }
+        }
+        return new PageImpl<>(content, pageRequest, result.getTotalHits());
+    }
+
+    @Override
+    @Timed("library.service")
+    @Transactional(readOnly = true)
+    public Page<Book> findAvailable(Pageable pageRequest) {
+        return repository.findByAvailableTrue(pageRequest);
+    }
+
+    @Override
+    @Timed("library.service")
+    @Transactional(readOnly = true)
     public Optional<Book> getBookByIsbn(String isbn) {
-        return repository.findByIsbn(isbn);
+        return isbnCache.get(isbn, repository::findByIsbn, repository::findById);
+    }
+
+    @Override
+    @Timed("library.service")
+    public List<Book> getBooksByIsbn(Collection<String> isbns) {
+        if (isbns.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // Bypasses the isbn cache so callers inside a transaction get managed entities they can update
+        return repository.findByIsbnIn(isbns);
     }
 }
@@ -0,0 +1,66 @@
+package com.jjcdutra2015.libraryapi.service.impl;
+
+import com.jjcdutra2015.libraryapi.api.dto.LoanFilterDTO;
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.Loan;
+import com.jjcdutra2015.libraryapi.model.entity.repository.BookExampleRepository;
+import com.jjcdutra2015.libraryapi.model.entity.repository.BookRepository;
+import com.jjcdutra2015.libraryapi.service.ExportService;
+import com.jjcdutra2015.libraryapi.service.LoanService;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Exports read with the same filters as the lists, so an export holds exactly the rows listed for the
+ * same parameters, in id order.
+ */
+@Service
+public class ExportServiceImpl implements ExportService {
+
+    public static final int LOAN_PAGE_SIZE = Integer.parseInt(BookRepository.STREAM_FETCH_SIZE);
+
+    private BookRepository bookRepository;
+    private LoanService loanService;
+    private EntityManager entityManager;
+
+    public ExportServiceImpl(BookRepository bookRepository, LoanService loanService, EntityManager entityManager) {
+        this.bookRepository = bookRepository;
+        this.loanService = loanService;
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachBook(Book filter, Consumer<Book> action) {
+        try (Stream<Book> books = bookRepository.stream(BookExampleRepository.filter(filter))) {
+            books.forEach(book -> {
+                action.accept(book);
+                // Keeps the persistence context from growing with every row read
+                entityManager.detach(book);
+            });
+        }
+    }
+
+    // Keyset pages of the loan list, which covers the isbn/customer union, the archive and the shards
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachLoan(LoanFilterDTO filter, Consumer<Loan> action) {
+        Long after = null;
+        Slice<Loan> page;
+        do {
+            page = loanService.find(filter, after, LOAN_PAGE_SIZE);
+            List<Loan> loans = page.getContent();
+            loans.forEach(action);
+            if (!loans.isEmpty()) {
+                after = loans.get(loans.size() - 1).getId();
+            }
+            entityManager.clear();
+        } while (page.hasNext());
+    }
+}
@@ -0,0 +1,95 @@
+package com.jjcdutra2015.libraryapi.service.impl;
+
+import com.jjcdutra2015.libraryapi.model.entity.repository.LoanStore;
+import com.jjcdutra2015.libraryapi.service.LoanArchiveService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves returned loans whose loan date is more than {@code library.loans.archive.after-days} old from
+ * {@code loan} to {@code loan_archive}, one transaction per chunk. Loans keep no return date, so the
+ * loan date is the age that counts.
+ */
+@Slf4j
+@Service
+public class LoanArchiveServiceImpl implements LoanArchiveService {
+
+    private LoanStore loanRepository;
+    private TransactionTemplate transactionTemplate;
+    private int archiveAfterDays;
+    private int chunkSize;
+
+    private Timer archiveTimer;
+    private Counter archivedLoans;
+    private AtomicLong lastRunLoans;
+    private AtomicLong hotRows;
+
+    public LoanArchiveServiceImpl(LoanStore loanRepository,
+                                  MeterRegistry meterRegistry,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${library.loans.archive.after-days:365}") int archiveAfterDays,
+                                  @Value("${library.loans.archive.chunk-size:1000}") int chunkSize) {
+        this.loanRepository = loanRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.archiveAfterDays = archiveAfterDays;
+        this.chunkSize = chunkSize;
+
+        this.archiveTimer = meterRegistry.timer("library.loans.archive");
+        this.archivedLoans = meterRegistry.counter("library.loans.archive.loans");
+        this.lastRunLoans = meterRegistry.gauge("library.loans.archive.last.loans", new AtomicLong());
+        this.hotRows = meterRegistry.gauge("library.loans.hot.rows", new AtomicLong());
+        // Share of the loan table the last run moved out
+        Gauge.builder("library.loans.archive.last.shrink", this, LoanArchiveServiceImpl::lastShrink)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public int archive() {
+        int archived = archiveTimer.record(this::archiveChunks);
+        archivedLoans.increment(archived);
+        lastRunLoans.set(archived);
+        hotRows.set(loanRepository.count());
+        return archived;
+    }
+
+    private int archiveChunks() {
+        LocalDate cutoff = LocalDate.now().minusDays(archiveAfterDays);
+        int archived = 0;
+        int chunks = 0;
+        int moved;
+        do {
+            moved = transactionTemplate.execute(status -> archiveChunk(cutoff));
+            archived += moved;
+            chunks++;
+        } while (moved == chunkSize);
+        log.info("Loan archival moved {} loans in {} chunks", archived, chunks);
+        return archived;
+    }
+
+    private int archiveChunk(LocalDate cutoff) {
+        List<Long> ids = loanRepository.findArchivableIds(cutoff, PageRequest.of(0, chunkSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        loanRepository.copyToArchive(ids);
+        loanRepository.deleteByIdIn(ids);
+        return ids.size();
+    }
+
+    private double lastShrink() {
+        long before = hotRows.get() + lastRunLoans.get();
+        return before == 0 ? 0 : (double) lastRunLoans.get() / before;
+    }
+}
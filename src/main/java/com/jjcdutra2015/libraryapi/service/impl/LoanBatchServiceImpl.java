@@ -0,0 +1,199 @@
+package com.jjcdutra2015.libraryapi.service.impl;
+
+import com.jjcdutra2015.libraryapi.api.dto.LoanBatchItemDTO;
+import com.jjcdutra2015.libraryapi.api.dto.LoanBatchResultDTO;
+import com.jjcdutra2015.libraryapi.api.dto.LoanReturnDTO;
+import com.jjcdutra2015.libraryapi.api.dto.LoandDTO;
+import com.jjcdutra2015.libraryapi.exception.BusinessException;
+import com.jjcdutra2015.libraryapi.exception.ConstraintViolations;
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.Loan;
+import com.jjcdutra2015.libraryapi.model.entity.repository.LoanStore;
+import com.jjcdutra2015.libraryapi.service.BookService;
+import com.jjcdutra2015.libraryapi.service.LoanBatchService;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Service
+public class LoanBatchServiceImpl implements LoanBatchService {
+
+    private LoanStore repository;
+    private BookService bookService;
+    private TransactionTemplate transactionTemplate;
+
+    public LoanBatchServiceImpl(LoanStore repository,
+                                BookService bookService,
+                                PlatformTransactionManager transactionManager) {
+        this.repository = repository;
+        this.bookService = bookService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public LoanBatchResultDTO checkout(List<LoandDTO> requests) {
+        List<LoanBatchItemDTO> items;
+        try {
+            items = transactionTemplate.execute(status -> insertLoans(requests));
+        } catch (DataIntegrityViolationException e) {
+            if (!ConstraintViolations.isViolationOf(e, Loan.ACTIVE_BOOK_CONSTRAINT)) {
+                throw e;
+            }
+            // A concurrent checkout took one of the books after the check; the retry sees it as loaned
+            items = transactionTemplate.execute(status -> insertLoans(requests));
+        }
+        return result(items);
+    }
+
+    @Override
+    public LoanBatchResultDTO updateReturns(List<LoanReturnDTO> returns) {
+        try {
+            return result(transactionTemplate.execute(status -> applyReturns(returns)));
+        } catch (DataIntegrityViolationException e) {
+            if (ConstraintViolations.isViolationOf(e, Loan.ACTIVE_BOOK_CONSTRAINT)) {
+                throw new BusinessException("Book already loaned");
+            }
+            throw e;
+        }
+    }
+
+    private List<LoanBatchItemDTO> insertLoans(List<LoandDTO> requests) {
+        Set<String> isbns = new HashSet<>();
+        for (LoandDTO request : requests) {
+            if (isValid(request)) {
+                isbns.add(request.getIsbn());
+            }
+        }
+        // Availability comes back with the books, so a single query covers both the lookup and the active loan check
+        Map<String, Book> books = new HashMap<>();
+        for (Book book : bookService.getBooksByIsbn(isbns)) {
+            books.put(book.getIsbn(), book);
+        }
+
+        List<LoanBatchItemDTO> items = new ArrayList<>(requests.size());
+        List<Loan> loans = new ArrayList<>();
+        List<LoanBatchItemDTO> created = new ArrayList<>();
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < requests.size(); i++) {
+            LoandDTO request = requests.get(i);
+            LoanBatchItemDTO item = LoanBatchItemDTO.builder()
+                    .index(i)
+                    .isbn(request != null ? request.getIsbn() : null)
+                    .build();
+            Book book = isValid(request) ? books.get(request.getIsbn()) : null;
+            if (!isValid(request)) {
+                item.setStatus(LoanBatchItemDTO.Status.INVALID);
+                item.setMessage("Isbn and customer are required");
+            } else if (book == null) {
+                item.setStatus(LoanBatchItemDTO.Status.NOT_FOUND);
+                item.setMessage("Book not found for passed isbn");
+            } else if (!book.getAvailable()) {
+                item.setStatus(LoanBatchItemDTO.Status.ALREADY_LOANED);
+                item.setMessage("Book already loaned");
+            } else {
+                book.setAvailable(false);
+                loans.add(Loan.builder().book(book).customer(request.getCustomer()).loanDate(today).build());
+                item.setStatus(LoanBatchItemDTO.Status.CREATED);
+                created.add(item);
+            }
+            items.add(item);
+        }
+
+        if (!loans.isEmpty()) {
+            repository.saveAllAndFlush(loans);
+            for (int i = 0; i < loans.size(); i++) {
+                created.get(i).setId(loans.get(i).getId());
+            }
+        }
+        return items;
+    }
+
+    private List<LoanBatchItemDTO> applyReturns(List<LoanReturnDTO> returns) {
+        Set<Long> ids = new HashSet<>();
+        for (LoanReturnDTO dto : returns) {
+            if (isValid(dto)) {
+                ids.add(dto.getId());
+            }
+        }
+        Map<Long, Loan> loans = new HashMap<>();
+        if (!ids.isEmpty()) {
+            for (Loan loan : repository.findWithBookByIdIn(ids)) {
+                loans.put(loan.getId(), loan);
+            }
+        }
+
+        List<LoanBatchItemDTO> items = new ArrayList<>(returns.size());
+        List<Loan> changed = new ArrayList<>();
+        for (int i = 0; i < returns.size(); i++) {
+            LoanReturnDTO dto = returns.get(i);
+            LoanBatchItemDTO item = LoanBatchItemDTO.builder()
+                    .index(i)
+                    .id(dto != null ? dto.getId() : null)
+                    .build();
+            Loan loan = isValid(dto) ? loans.get(dto.getId()) : null;
+            if (!isValid(dto)) {
+                item.setStatus(LoanBatchItemDTO.Status.INVALID);
+                item.setMessage("Id and returned are required");
+            } else if (loan == null) {
+                item.setStatus(LoanBatchItemDTO.Status.NOT_FOUND);
+                item.setMessage("Loan not found");
+            } else {
+                item.setIsbn(loan.getBook().getIsbn());
+                boolean returned = dto.getReturned();
+                boolean wasReturned = Boolean.TRUE.equals(loan.getReturned());
+                if (!returned && wasReturned && !loan.getBook().getAvailable()) {
+                    item.setStatus(LoanBatchItemDTO.Status.ALREADY_LOANED);
+                    item.setMessage("Book already loaned");
+                } else {
+                    loan.setReturned(returned);
+                    changed.add(loan);
+                    if (returned != wasReturned) {
+                        loan.getBook().setAvailable(returned);
+                    }
+                    item.setStatus(returned ? LoanBatchItemDTO.Status.RETURNED : LoanBatchItemDTO.Status.UPDATED);
+                }
+            }
+            items.add(item);
+        }
+
+        repository.saveAllAndFlush(changed);
+        return items;
+    }
+
+    private LoanBatchResultDTO result(List<LoanBatchItemDTO> items) {
+        int succeeded = 0;
+        for (LoanBatchItemDTO item : items) {
+            if (item.getStatus() == LoanBatchItemDTO.Status.CREATED
+                    || item.getStatus() == LoanBatchItemDTO.Status.RETURNED
+                    || item.getStatus() == LoanBatchItemDTO.Status.UPDATED) {
+                succeeded++;
+            }
+        }
+        return LoanBatchResultDTO.builder()
+                .succeeded(succeeded)
+                .failed(items.size() - succeeded)
+                .items(items)
+                .build();
+    }
+
+    private boolean isValid(LoandDTO request) {
+        return request != null && hasText(request.getIsbn()) && hasText(request.getCustomer());
+    }
+
+    private boolean isValid(LoanReturnDTO dto) {
+        return dto != null && dto.getId() != null && dto.getReturned() != null;
+    }
+
+    private boolean hasText(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+}
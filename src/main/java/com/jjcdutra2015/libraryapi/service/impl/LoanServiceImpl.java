@@ -2,44 +2,155 @@ package com.jjcdutra2015.libraryapi.service.impl;
 
 import com.jjcdutra2015.libraryapi.api.dto.LoanFilterDTO;
 import com.jjcdutra2015.libraryapi.exception.BusinessException;
+import com.jjcdutra2015.libraryapi.exception.ConstraintViolations;
+import com.jjcdutra2015.libraryapi.model.entity.ArchivedLoan;
+import com.jjcdutra2015.libraryapi.model.entity.Book;
 import com.jjcdutra2015.libraryapi.model.entity.Loan;
-import com.jjcdutra2015.libraryapi.model.entity.repository.LoanRepository;
+import com.jjcdutra2015.libraryapi.model.entity.repository.ArchivedLoanRepository;
+import com.jjcdutra2015.libraryapi.model.entity.repository.BookRepository;
+import com.jjcdutra2015.libraryapi.model.entity.repository.LoanSort;
+import com.jjcdutra2015.libraryapi.model.entity.repository.LoanStore;
 import com.jjcdutra2015.libraryapi.service.LoanService;
+import com.jjcdutra2015.libraryapi.service.cache.CountCache;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class LoanServiceImpl implements LoanService {
 
-    private LoanRepository repository;
+    private LoanStore repository;
+    private BookRepository bookRepository;
+    private ArchivedLoanRepository archivedRepository;
+    private CountCache countCache;
 
-    public LoanServiceImpl(LoanRepository repository) {
+    public LoanServiceImpl(LoanStore repository, BookRepository bookRepository,
+                           ArchivedLoanRepository archivedRepository, CountCache countCache) {
         this.repository = repository;
+        this.bookRepository = bookRepository;
+        this.archivedRepository = archivedRepository;
+        this.countCache = countCache;
     }
 
     @Override
+    @Timed("library.service")
+    @Transactional
     public Loan save(Loan loan) {
-        if (repository.existsByBookAndNotReturned(loan.getBook())) {
+        Book book = bookRepository.findById(loan.getBook().getId())
+                .orElseThrow(() -> new BusinessException("Book not found"));
+        if (!book.getAvailable()) {
             throw new BusinessException("Book already loaned");
         }
-        return repository.save(loan);
+        book.setAvailable(false);
+        loan.setBook(book);
+        return saveAndFlush(loan);
     }
 
     @Override
+    @Timed("library.service")
     public Optional<Loan> getById(Long id) {
         return repository.findById(id);
     }
 
     @Override
+    @Timed("library.service")
+    @Transactional
     public Loan update(Loan loan) {
-        return repository.save(loan);
+        boolean wasReturned = loan.wasReturned();
+        Loan updatedLoan = saveAndFlush(loan);
+        Book book = updatedLoan.getBook();
+        boolean returned = Boolean.TRUE.equals(updatedLoan.getReturned());
+        // Returning an already returned loan must not free a book another loan now holds
+        if (returned != wasReturned && book != null && book.getId() != null) {
+            bookRepository.findById(book.getId()).ifPresent(managedBook -> managedBook.setAvailable(returned));
+        }
+        return updatedLoan;
     }
 
     @Override
+    @Timed("library.service")
+    @Transactional(readOnly = true)
     public Page<Loan> find(LoanFilterDTO filter, Pageable pageable) {
-        return repository.findByBookIsbnOrCustomer(filter.getIsbn(), filter.getCustomer(), pageable);
+        boolean includeArchived = includeArchived(filter);
+        return countCache.page(findSlice(filter, pageable),
+                Arrays.asList("loan", filter.getIsbn(), filter.getCustomer(), includeArchived),
+                () -> repository.countSearch(filter.getIsbn(), filter.getCustomer())
+                        + (includeArchived ? archivedRepository.countSearch(filter.getIsbn(), filter.getCustomer()) : 0));
+    }
+
+    @Override
+    @Timed("library.service")
+    @Transactional(readOnly = true)
+    public Slice<Loan> findSlice(LoanFilterDTO filter, Pageable pageable) {
+        if (!includeArchived(filter)) {
+            return repository.searchSlice(filter.getIsbn(), filter.getCustomer(), pageable);
+        }
+        // The archive is merged in id order, see merge
+        if (!LoanSort.isById(pageable.getSort())) {
+            throw new BusinessException("Loans including archived ones can only be sorted by id");
+        }
+        int limit = (int) pageable.getOffset() + pageable.getPageSize() + 1;
+        List<Loan> loans = repository.searchSlice(filter.getIsbn(), filter.getCustomer(), PageRequest.of(0, limit))
+                .getContent();
+        return merge(loans, archived(filter, null, limit), (int) pageable.getOffset(), pageable);
+    }
+
+    @Override
+    @Timed("library.service")
+    @Transactional(readOnly = true)
+    public Slice<Loan> find(LoanFilterDTO filter, Long after, int size) {
+        long from = after != null ? after : 0L;
+        if (!includeArchived(filter)) {
+            return repository.searchAfter(from, filter.getIsbn(), filter.getCustomer(), PageRequest.of(0, size));
+        }
+        List<Loan> loans = repository.searchAfter(from, filter.getIsbn(), filter.getCustomer(), PageRequest.of(0, size + 1))
+                .getContent();
+        return merge(loans, archived(filter, from, size + 1), 0, PageRequest.of(0, size));
+    }
+
+    private List<Loan> archived(LoanFilterDTO filter, Long after, int limit) {
+        return archivedRepository.findFirst(filter.getIsbn(), filter.getCustomer(), after, limit).stream()
+                .map(ArchivedLoan::toLoan)
+                .collect(Collectors.toList());
+    }
+
+    // Both lists are in id order and hold every row up to offset + size + 1 of their own table
+    private static Slice<Loan> merge(List<Loan> loans, List<Loan> archived, int offset, Pageable pageable) {
+        int size = pageable.getPageSize();
+        List<Loan> content = Stream.concat(loans.stream(), archived.stream())
+                .sorted(Comparator.comparingLong(Loan::getId))
+                .skip(offset)
+                .limit(size + 1)
+                .collect(Collectors.toList());
+        boolean hasNext = content.size() > size;
+        return new SliceImpl<>(hasNext ? content.subList(0, size) : content, pageable, hasNext);
+    }
+
+    private static boolean includeArchived(LoanFilterDTO filter) {
+        return Boolean.TRUE.equals(filter.getIncludeArchived());
+    }
+
+    private Loan saveAndFlush(Loan loan) {
+        try {
+            return repository.saveAndFlush(loan);
+        } catch (DataIntegrityViolationException e) {
+            if (ConstraintViolations.isViolationOf(e, Loan.ACTIVE_BOOK_CONSTRAINT)) {
+                throw new BusinessException("Book already loaned");
+            }
+            throw e;
+        }
     }
 }
@@ -0,0 +1,115 @@
+package com.jjcdutra2015.libraryapi.service.impl;
+
+import com.jjcdutra2015.libraryapi.model.entity.JobCheckpoint;
+import com.jjcdutra2015.libraryapi.model.entity.Loan;
+import com.jjcdutra2015.libraryapi.model.entity.repository.JobCheckpointRepository;
+import com.jjcdutra2015.libraryapi.model.entity.repository.LoanStore;
+import com.jjcdutra2015.libraryapi.service.OverdueLoanService;
+import com.jjcdutra2015.libraryapi.service.overdue.OverdueLoansEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Slf4j
+@Service
+public class OverdueLoanServiceImpl implements OverdueLoanService {
+
+    static final String CHECKPOINT = "overdue-loan-scan";
+
+    private static final LocalDate START = LocalDate.of(1900, 1, 1);
+
+    private LoanStore repository;
+    private JobCheckpointRepository checkpointRepository;
+    private ApplicationEventPublisher eventPublisher;
+    private TransactionTemplate transactionTemplate;
+    private int overdueDays;
+    private int chunkSize;
+
+    private Timer scanTimer;
+    private Counter scannedLoans;
+    private AtomicInteger lastRunLoans;
+
+    public OverdueLoanServiceImpl(LoanStore repository,
+                                  JobCheckpointRepository checkpointRepository,
+                                  ApplicationEventPublisher eventPublisher,
+                                  MeterRegistry meterRegistry,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${library.loans.overdue-days:3}") int overdueDays,
+                                  @Value("${library.loans.overdue-scan.chunk-size:500}") int chunkSize) {
+        this.repository = repository;
+        this.checkpointRepository = checkpointRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.overdueDays = overdueDays;
+        this.chunkSize = chunkSize;
+
+        this.scanTimer = meterRegistry.timer("library.overdue.scan");
+        this.scannedLoans = meterRegistry.counter("library.overdue.scan.loans");
+        this.lastRunLoans = meterRegistry.gauge("library.overdue.scan.last.loans", new AtomicInteger());
+    }
+
+    @Override
+    public Slice<Loan> findOverdue(LocalDate afterDate, Long afterId, int size) {
+        return repository.findOverdueAfter(cutoff(), afterDate != null ? afterDate : START,
+                afterId != null ? afterId : 0L, PageRequest.of(0, size));
+    }
+
+    @Override
+    public int scan() {
+        int processed = scanTimer.record(this::processChunks);
+        scannedLoans.increment(processed);
+        lastRunLoans.set(processed);
+        return processed;
+    }
+
+    private int processChunks() {
+        LocalDate cutoff = cutoff();
+        int processed = 0;
+        int chunks = 0;
+        Slice<Loan> chunk;
+        do {
+            chunk = transactionTemplate.execute(status -> processChunk(cutoff));
+            processed += chunk.getNumberOfElements();
+            chunks++;
+        } while (chunk.hasNext());
+        log.info("Overdue loan scan processed {} loans in {} chunks", processed, chunks);
+        return processed;
+    }
+
+    private Slice<Loan> processChunk(LocalDate cutoff) {
+        JobCheckpoint checkpoint = checkpointRepository.findById(CHECKPOINT)
+                .orElseGet(() -> JobCheckpoint.builder().name(CHECKPOINT).build());
+        Slice<Loan> chunk = repository.findOverdueAfter(cutoff,
+                checkpoint.getLastDate() != null ? checkpoint.getLastDate() : START,
+                checkpoint.getLastId() != null ? checkpoint.getLastId() : 0L,
+                PageRequest.of(0, chunkSize));
+
+        List<Loan> loans = chunk.getContent();
+        if (!loans.isEmpty()) {
+            eventPublisher.publishEvent(new OverdueLoansEvent(loans));
+            Loan last = loans.get(loans.size() - 1);
+            checkpoint.setLastDate(last.getLoanDate());
+            checkpoint.setLastId(last.getId());
+            checkpoint.setUpdatedAt(LocalDateTime.now());
+            checkpointRepository.save(checkpoint);
+        }
+        return chunk;
+    }
+
+    private LocalDate cutoff() {
+        return LocalDate.now().minusDays(overdueDays);
+    }
+}
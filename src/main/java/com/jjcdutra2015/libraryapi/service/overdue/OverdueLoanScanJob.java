@@ -0,0 +1,20 @@
+package com.jjcdutra2015.libraryapi.service.overdue;
+
+import com.jjcdutra2015.libraryapi.service.OverdueLoanService;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+public class OverdueLoanScanJob {
+
+    private final OverdueLoanService service;
+
+    public OverdueLoanScanJob(OverdueLoanService service) {
+        this.service = service;
+    }
+
+    @Scheduled(cron = "${library.loans.overdue-scan.cron:0 0 1 * * *}")
+    public void run() {
+        service.scan();
+    }
+}
@@ -0,0 +1,16 @@
+package com.jjcdutra2015.libraryapi.service.overdue;
+
+import com.jjcdutra2015.libraryapi.model.entity.Loan;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Published once per chunk by the overdue scan, inside the chunk transaction: a listener that fails
+ * rolls the checkpoint back and the chunk is delivered again on the next run. {@link OverdueNoticeListener}
+ * records each loan.
+ */
+@Value
+public class OverdueLoansEvent {
+    List<Loan> loans;
+}
@@ -0,0 +1,33 @@
+package com.jjcdutra2015.libraryapi.service.overdue;
+
+import com.jjcdutra2015.libraryapi.model.entity.OverdueNotice;
+import com.jjcdutra2015.libraryapi.model.entity.repository.OverdueNoticeRepository;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Records every loan of an {@link OverdueLoansEvent} as an {@link OverdueNotice}, in the chunk transaction.
+ */
+@Component
+public class OverdueNoticeListener {
+
+    private final OverdueNoticeRepository repository;
+
+    public OverdueNoticeListener(OverdueNoticeRepository repository) {
+        this.repository = repository;
+    }
+
+    @EventListener
+    public void record(OverdueLoansEvent event) {
+        LocalDateTime now = LocalDateTime.now();
+        List<OverdueNotice> notices = event.getLoans().stream()
+                .map(loan -> OverdueNotice.of(loan, now))
+                .collect(Collectors.toList());
+        // Keyed by loan: a notice already recorded by an earlier delivery of the chunk is overwritten, not doubled
+        repository.saveAll(notices);
+    }
+}
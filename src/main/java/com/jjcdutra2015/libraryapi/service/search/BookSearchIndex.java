@@ -0,0 +1,171 @@
+package com.jjcdutra2015.libraryapi.service.search;
+
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.*;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+@Component
+public class BookSearchIndex {
+
+    private static final String ID = "id";
+    private static final String TITLE = "title";
+    private static final String AUTHOR = "author";
+    private static final String ISBN = "isbn";
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+
+    public BookSearchIndex() {
+        try {
+            this.writer = new IndexWriter(new ByteBuffersDirectory(), new IndexWriterConfig(analyzer));
+            this.searcherManager = new SearcherManager(writer, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void index(Book book) {
+        index(Collections.singletonList(book));
+    }
+
+    public void index(Collection<Book> books) {
+        try {
+            for (Book book : books) {
+                writer.updateDocument(new Term(ID, book.getId().toString()), toDocument(book));
+            }
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void delete(Long id) {
+        try {
+            writer.deleteDocuments(new Term(ID, id.toString()));
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void clear() {
+        try {
+            writer.deleteAll();
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public BookSearchResult search(String text, Pageable pageable) {
+        Query query = buildQuery(text);
+        if (query == null) {
+            return new BookSearchResult(Collections.emptyList(), 0);
+        }
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                int offset = (int) pageable.getOffset();
+                TopScoreDocCollector collector =
+                        TopScoreDocCollector.create(offset + pageable.getPageSize(), Integer.MAX_VALUE);
+                searcher.search(query, collector);
+
+                List<Long> ids = new ArrayList<>(pageable.getPageSize());
+                for (ScoreDoc scoreDoc : collector.topDocs(offset, pageable.getPageSize()).scoreDocs) {
+                    ids.add(Long.valueOf(searcher.doc(scoreDoc.doc).get(ID)));
+                }
+                return new BookSearchResult(ids, collector.getTotalHits());
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        searcherManager.close();
+        writer.close();
+    }
+
+    private Document toDocument(Book book) {
+        Document document = new Document();
+        document.add(new StringField(ID, book.getId().toString(), Field.Store.YES));
+        if (book.getTitle() != null) {
+            document.add(new TextField(TITLE, book.getTitle(), Field.Store.NO));
+        }
+        if (book.getAuthor() != null) {
+            document.add(new TextField(AUTHOR, book.getAuthor(), Field.Store.NO));
+        }
+        if (book.getIsbn() != null) {
+            document.add(new StringField(ISBN, book.getIsbn().toLowerCase(Locale.ROOT), Field.Store.NO));
+        }
+        return document;
+    }
+
+    private Query buildQuery(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return null;
+        }
+
+        // Every word has to prefix-match the title or the author; exact word matches and
+        // title matches rank higher. The isbn is matched as a whole, by prefix.
+        BooleanQuery.Builder words = new BooleanQuery.Builder();
+        List<String> terms = analyze(text);
+        for (String term : terms) {
+            BooleanQuery.Builder anyField = new BooleanQuery.Builder();
+            anyField.add(new BoostQuery(new TermQuery(new Term(TITLE, term)), 4f), BooleanClause.Occur.SHOULD);
+            anyField.add(new BoostQuery(new PrefixQuery(new Term(TITLE, term)), 2f), BooleanClause.Occur.SHOULD);
+            anyField.add(new BoostQuery(new TermQuery(new Term(AUTHOR, term)), 2f), BooleanClause.Occur.SHOULD);
+            anyField.add(new PrefixQuery(new Term(AUTHOR, term)), BooleanClause.Occur.SHOULD);
+            words.add(anyField.build(), BooleanClause.Occur.MUST);
+        }
+
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        if (!terms.isEmpty()) {
+            query.add(words.build(), BooleanClause.Occur.SHOULD);
+        }
+        String isbn = text.trim().toLowerCase(Locale.ROOT);
+        query.add(new BoostQuery(new PrefixQuery(new Term(ISBN, isbn)), 8f), BooleanClause.Occur.SHOULD);
+        return query.build();
+    }
+
+    private List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        try (TokenStream stream = analyzer.tokenStream(TITLE, text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.add(term.toString());
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,46 @@
+package com.jjcdutra2015.libraryapi.service.search;
+
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.repository.BookRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Slf4j
+@Component
+public class BookSearchIndexLoader implements ApplicationRunner {
+
+    private final BookRepository repository;
+    private final BookSearchIndex searchIndex;
+    private final int batchSize;
+
+    public BookSearchIndexLoader(BookRepository repository, BookSearchIndex searchIndex,
+                                 @Value("${library.search.rebuild-batch-size:1000}") int batchSize) {
+        this.repository = repository;
+        this.searchIndex = searchIndex;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long indexed = 0;
+        Long after = 0L;
+        Slice<Book> slice;
+        do {
+            slice = repository.findAfter(after, null, null, null, PageRequest.of(0, batchSize));
+            List<Book> books = slice.getContent();
+            if (!books.isEmpty()) {
+                searchIndex.index(books);
+                indexed += books.size();
+                after = books.get(books.size() - 1).getId();
+            }
+        } while (slice.hasNext());
+        log.info("Book search index rebuilt with {} books", indexed);
+    }
+}
@@ -0,0 +1,14 @@
+package com.jjcdutra2015.libraryapi.service.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class BookSearchResult {
+
+    private List<Long> ids;
+    private long totalHits;
+}
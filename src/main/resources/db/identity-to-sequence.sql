@@ -0,0 +1,11 @@
+-- Moves book and loan ids from identity columns to the pooled-lo sequences, keeping every existing id.
+-- Run once against a database created by Hibernate auto-DDL before the switch, then baseline it at
+-- Flyway version 1 so only the later migrations apply; R__id_sequences.sql then sets the increment
+-- from library.ids.allocation-size.
+create sequence if not exists book_seq start with 1 increment by 50;
+alter sequence book_seq restart with (select coalesce(max(id), 0) + 1 from book);
+alter table book alter column id bigint not null;
+
+create sequence if not exists loan_seq start with 1 increment by 50;
+alter sequence loan_seq restart with (select coalesce(max(id), 0) + 1 from loan);
+alter table loan alter column id bigint not null;
@@ -0,0 +1,11 @@
+-- Keeps the sequences' increment equal to library.ids.allocation-size, the block PooledLoSequenceGenerator
+-- hands out per call. Flyway reapplies this whenever the value changes. Each restart keeps the next value
+-- past the last block handed out under the old increment, so a smaller block cannot reissue ids.
+-- Change the value with every instance stopped: a running one still cuts blocks of the old size.
+alter sequence book_seq restart with
+    (select current_value + increment from information_schema.sequences where sequence_name = 'BOOK_SEQ');
+alter sequence book_seq increment by ${allocation_size};
+
+alter sequence loan_seq restart with
+    (select current_value + increment from information_schema.sequences where sequence_name = 'LOAN_SEQ');
+alter sequence loan_seq increment by ${allocation_size};
@@ -0,0 +1,38 @@
+create sequence book_seq start with 1 increment by 50;
+create sequence loan_seq start with 1 increment by 50;
+
+create table book (
+    id bigint not null,
+    title varchar(255),
+    author varchar(255),
+    isbn varchar(255),
+    available boolean not null,
+    version bigint not null,
+    updated_at timestamp not null,
+    primary key (id)
+);
+
+create table loan (
+    id bigint not null,
+    customer varchar(100),
+    id_book bigint,
+    loan_date date,
+    returned boolean not null,
+    active_book_id bigint,
+    primary key (id)
+);
+
+create table job_checkpoint (
+    name varchar(50) not null,
+    last_date date,
+    last_id bigint,
+    updated_at timestamp,
+    primary key (name)
+);
+
+alter table book add constraint uk_book_isbn unique (isbn);
+alter table loan add constraint uk_loan_active_book unique (active_book_id);
+alter table loan add constraint fk_loan_book foreign key (id_book) references book;
+
+create index idx_book_available on book (available, id);
+create index idx_loan_returned_loan_date on loan (returned, loan_date, id);
@@ -0,0 +1,7 @@
+-- findByIsbn, existsByIsbn and findByIsbnIn are served by the unique index behind uk_book_isbn.
+
+-- existsByBookAndNotReturned: equality on the book, then the returned flag; also backs fk_loan_book
+create index idx_loan_book_returned on loan (id_book, returned);
+
+-- customer lookups in findByBookIsbnOrCustomer and the export stream
+create index idx_loan_customer on loan (customer, id);
@@ -0,0 +1,14 @@
+-- Returned loans moved out of loan by the archival job; ids are kept, so no sequence.
+create table loan_archive (
+    id bigint not null,
+    customer varchar(100),
+    id_book bigint,
+    loan_date date,
+    primary key (id)
+);
+
+alter table loan_archive add constraint fk_loan_archive_book foreign key (id_book) references book;
+
+-- isbn and customer lookups of the archived history, both read in id order
+create index idx_loan_archive_book on loan_archive (id_book, id);
+create index idx_loan_archive_customer on loan_archive (customer, id);
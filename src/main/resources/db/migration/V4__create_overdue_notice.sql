@@ -0,0 +1,10 @@
+-- What the overdue scan found, one row per loan, so a chunk delivered again is recorded only once.
+-- No foreign keys: loans may live in the shards or move to loan_archive, and books may be deleted.
+create table overdue_notice (
+    loan_id bigint not null,
+    customer varchar(100),
+    id_book bigint,
+    loan_date date,
+    detected_at timestamp not null,
+    primary key (loan_id)
+);
@@ -0,0 +1,19 @@
+-- Loans only: books stay in the main database, so there is no foreign key to book.
+-- Every loan of a book lands on the same shard, which keeps uk_loan_active_book a single-shard check.
+create sequence loan_seq start with 1 increment by 1;
+
+create table loan (
+    id bigint not null,
+    customer varchar(100),
+    id_book bigint not null,
+    loan_date date,
+    returned boolean not null,
+    active_book_id bigint,
+    primary key (id)
+);
+
+alter table loan add constraint uk_loan_active_book unique (active_book_id);
+
+create index idx_loan_book_returned on loan (id_book, returned);
+create index idx_loan_customer on loan (customer, id);
+create index idx_loan_returned_loan_date on loan (returned, loan_date, id);
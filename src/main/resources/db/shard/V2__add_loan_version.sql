@@ -0,0 +1,3 @@
+-- Bumped by every write, so undoing a write whose transaction rolled back can tell whether
+-- another transaction has touched the row since.
+alter table loan add column version bigint default 0 not null;
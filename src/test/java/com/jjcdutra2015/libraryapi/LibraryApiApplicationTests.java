@@ -1,13 +1,28 @@
 package com.jjcdutra2015.libraryapi;
 
+import com.jjcdutra2015.libraryapi.model.datasource.DataSourceSettingsValidator;
+import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest
 class LibraryApiApplicationTests {
 
+	@Autowired
+	ApplicationContext context;
+
 	@Test
 	void contextLoads() {
 	}
 
+	@Test
+	@DisplayName("Deve validar as configuracoes de conexao somente no perfil perf")
+	void settingsValidatorOnlyInPerfProfileTest() {
+		assertThat(context.getBeansOfType(DataSourceSettingsValidator.class)).isEmpty();
+	}
+
 }
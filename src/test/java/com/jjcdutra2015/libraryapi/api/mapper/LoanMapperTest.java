@@ -0,0 +1,58 @@
+package com.jjcdutra2015.libraryapi.api.mapper;
+
+import com.jjcdutra2015.libraryapi.api.dto.BookDTO;
+import com.jjcdutra2015.libraryapi.api.dto.LoandDTO;
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.Loan;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LoanMapperTest {
+
+    BookMapper bookMapper = new BookMapper();
+
+    LoanMapper loanMapper = new LoanMapper(bookMapper);
+
+    @Test
+    @DisplayName("Deve converter um livro em dto e de volta em entidade")
+    public void bookRoundTripTest() {
+        Book book = Book.builder().id(1L).title("As aventuras").author("Fulano").isbn("123").build();
+
+        BookDTO dto = bookMapper.toDto(book);
+        Book entity = bookMapper.toEntity(dto);
+
+        assertThat(dto.getId()).isEqualTo(1L);
+        assertThat(dto.getTitle()).isEqualTo("As aventuras");
+        assertThat(dto.getAuthor()).isEqualTo("Fulano");
+        assertThat(dto.getIsbn()).isEqualTo("123");
+        assertThat(entity).isEqualTo(book);
+    }
+
+    @Test
+    @DisplayName("Deve converter uma pagina de emprestimos mantendo a paginacao")
+    public void loanPageTest() {
+        Book book = Book.builder().id(1L).title("As aventuras").author("Fulano").isbn("123").build();
+        Loan loan = Loan.builder().id(2L).customer("Cicrano").book(book).loanDate(LocalDate.now()).build();
+        Page<Loan> page = new PageImpl<>(Arrays.asList(loan), PageRequest.of(1, 10), 11);
+
+        Page<LoandDTO> result = loanMapper.toDto(page);
+
+        assertThat(result.getTotalElements()).isEqualTo(11);
+        assertThat(result.getPageable().getPageNumber()).isEqualTo(1);
+        assertThat(result.getPageable().getPageSize()).isEqualTo(10);
+
+        LoandDTO dto = result.getContent().get(0);
+        assertThat(dto.getId()).isEqualTo(2L);
+        assertThat(dto.getCustomer()).isEqualTo("Cicrano");
+        assertThat(dto.getIsbn()).isEqualTo("123");
+        assertThat(dto.getBook().getTitle()).isEqualTo("As aventuras");
+    }
+}
@@ -0,0 +1,91 @@
+package com.jjcdutra2015.libraryapi.api.metrics;
+
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.repository.BookRepository;
+import com.jjcdutra2015.libraryapi.service.cache.BookIsbnCache;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+public class MetricsIntegrationTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    BookRepository repository;
+
+    @Autowired
+    BookIsbnCache isbnCache;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @AfterEach
+    public void cleanUp() {
+        repository.deleteAll();
+        isbnCache.clear();
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    @DisplayName("Deve contar as instrucoes sql por requisicao")
+    public void sqlStatementsPerRequestTest() throws Exception {
+        Book book = repository.save(Book.builder().title("As aventuras").author("Fulano").isbn("001").build());
+        entityManagerFactory.getCache().evictAll();
+
+        mvc.perform(MockMvcRequestBuilders.get("/api/books/" + book.getId())).andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/api/books/" + book.getId())).andExpect(status().isOk());
+
+        DistributionSummary statements = meterRegistry.get(SqlStatementMetricsFilter.METRIC_NAME)
+                .tag("method", "GET").tag("uri", "/api/books/{id}").summary();
+        assertThat(statements.count()).isEqualTo(2);
+        // The second request is served by the second-level cache
+        assertThat(statements.totalAmount()).isEqualTo(1);
+        assertThat(statements.max()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve publicar as metricas no endpoint do prometheus")
+    public void prometheusScrapeTest() throws Exception {
+        repository.save(Book.builder().title("As aventuras").author("Fulano").isbn("001").build());
+        mvc.perform(MockMvcRequestBuilders.get("/api/books/available")).andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.post("/api/loans")
+                .contentType("application/json")
+                .content("{\"isbn\":\"999\",\"customer\":\"Fulano\"}"))
+                .andExpect(status().isBadRequest());
+
+        String scrape = mvc.perform(MockMvcRequestBuilders.get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(scrape).contains("http_server_requests_seconds_bucket");
+        assertThat(scrape).containsPattern("library_service_seconds_bucket\\{class=\"[^\"]*BookServiceImpl\"[^}]*method=\"findAvailable\"");
+        assertThat(scrape).containsPattern("library_sql_statements_count\\{[^}]*uri=\"/api/books/available\"");
+        assertThat(scrape).containsPattern("cache_gets_total\\{cache=\"book-isbn\"[^}]*result=\"miss\"");
+        assertThat(scrape).contains("hikaricp_connections_pending");
+        assertThat(scrape).contains("spring_data_repository_invocations_seconds_bucket");
+        assertThat(scrape).containsPattern("hibernate_second_level_cache_requests_total\\{[^}]*region=\"book\"");
+    }
+}
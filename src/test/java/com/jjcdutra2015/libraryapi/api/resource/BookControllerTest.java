@@ -2,9 +2,15 @@ package com.jjcdutra2015.libraryapi.api.resource;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jjcdutra2015.libraryapi.api.dto.BookDTO;
+import com.jjcdutra2015.libraryapi.api.dto.BookImportItemDTO;
+import com.jjcdutra2015.libraryapi.api.dto.BookImportResultDTO;
+import com.jjcdutra2015.libraryapi.api.mapper.BookMapper;
+import com.jjcdutra2015.libraryapi.api.pagination.KeysetCursor;
 import com.jjcdutra2015.libraryapi.exception.BusinessException;
 import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.service.BookImportService;
 import com.jjcdutra2015.libraryapi.service.BookService;
+import com.jjcdutra2015.libraryapi.service.ExportService;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -14,21 +20,33 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -46,6 +64,15 @@ public class BookControllerTest {
     @MockBean
     BookService service;
 
+    @MockBean
+    BookImportService importService;
+
+    @MockBean
+    ExportService exportService;
+
+    @SpyBean
+    BookMapper bookMapper;
+
     @Test
     @DisplayName("Deve criar um livro com sucesso")
     public void createBookTest() throws Exception {
@@ -233,7 +260,336 @@ public class BookControllerTest {
                 .andExpect(jsonPath("pageable.pageNumber").value(0));
     }
 
+    @Test
+    @DisplayName("Deve filtrar livros sem total quando count=false")
+    public void findBooksWithoutCountTest() throws Exception {
+        Book book = Book.builder().id(1L).title("As aventuras").author("Autor").isbn("001").build();
+
+        given(service.findSlice(Mockito.any(Book.class), Mockito.any(Pageable.class)))
+                .willReturn(new SliceImpl<Book>(Arrays.asList(book), PageRequest.of(0, 10), true));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("?title=aventuras&page=0&size=10&count=false"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(jsonPath("number").value(0))
+                .andExpect(jsonPath("size").value(10))
+                .andExpect(jsonPath("hasNext").value(true))
+                .andExpect(jsonPath("totalElements").doesNotExist());
+        Mockito.verify(service, Mockito.never()).find(Mockito.any(Book.class), Mockito.any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Deve buscar livros por texto")
+    public void searchBooksTest() throws Exception {
+        Book book = Book.builder().id(1L).title("As aventuras").author("Autor").isbn("001").build();
+
+        given(service.search(Mockito.eq("aventuras"), Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<Book>(Arrays.asList(book), PageRequest.of(0, 20), 1));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(BOOK_API.concat("?q=aventuras"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(jsonPath("content[0].title").value("As aventuras"))
+                .andExpect(jsonPath("totalElements").value(1));
+    }
+
+    @Test
+    @DisplayName("Deve listar os livros disponiveis")
+    public void findAvailableBooksTest() throws Exception {
+        Book book = Book.builder().id(1L).title("As aventuras").author("Autor").isbn("001").build();
+
+        given(service.findAvailable(Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<Book>(Arrays.asList(book), PageRequest.of(0, 20), 1));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(BOOK_API.concat("/available?page=0&size=20"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(jsonPath("content[0].isbn").value("001"))
+                .andExpect(jsonPath("totalElements").value(1));
+    }
+
+    @Test
+    @DisplayName("Deve filtrar livros por cursor")
+    public void filterBookByCursorTest() throws Exception {
+        Book book = Book.builder()
+                .id(11L)
+                .title(createNewBook().getTitle())
+                .author(createNewBook().getAuthor())
+                .isbn(createNewBook().getIsbn())
+                .build();
+
+        given(service.find(Mockito.any(Book.class), Mockito.eq(10L), Mockito.eq(1)))
+                .willReturn(new SliceImpl<Book>(Arrays.asList(book), PageRequest.of(0, 1), true));
+
+        String queryString = String.format("?title=%s&after=%s&size=1", book.getTitle(), KeysetCursor.encode(10L));
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(BOOK_API.concat(queryString))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(jsonPath("content[0].id").value(11L))
+                .andExpect(jsonPath("next").value(KeysetCursor.encode(11L)))
+                .andExpect(jsonPath("totalElements").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Deve retornar erro ao filtrar livros com cursor invalido")
+    public void filterBookByInvalidCursorTest() throws Exception {
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(BOOK_API.concat("?after=invalido"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request)
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors[0]").value("Invalid cursor"));
+    }
+
+    @Test
+    @DisplayName("Deve importar livros a partir de um array json")
+    public void importBooksFromJsonArrayTest() throws Exception {
+        List<Book> imported = new ArrayList<>();
+        given(importService.importBooks(Mockito.any())).willAnswer(invocation -> {
+            Iterator<Book> books = invocation.getArgument(0);
+            books.forEachRemaining(imported::add);
+            return BookImportResultDTO.builder().created(imported.size()).build();
+        });
+
+        String json = new ObjectMapper().writeValueAsString(Arrays.asList(createNewBook(), createNewBook()));
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(BOOK_API.concat("/import"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("created").value(2));
+
+        assertThat(imported).hasSize(2);
+        assertThat(imported.get(0).getIsbn()).isEqualTo(createNewBook().getIsbn());
+    }
+
+    @Test
+    @DisplayName("Deve importar livros a partir de ndjson")
+    public void importBooksFromNdjsonTest() throws Exception {
+        List<Book> imported = new ArrayList<>();
+        given(importService.importBooks(Mockito.any())).willAnswer(invocation -> {
+            Iterator<Book> books = invocation.getArgument(0);
+            books.forEachRemaining(imported::add);
+            BookImportItemDTO item = BookImportItemDTO.builder()
+                    .index(0).isbn("001").status(BookImportItemDTO.Status.CREATED).build();
+            return BookImportResultDTO.builder().created(1).items(Arrays.asList(item)).build();
+        });
+
+        String line = new ObjectMapper().writeValueAsString(createNewBook());
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(BOOK_API.concat("/import"))
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(line + "\n" + line + "\n" + line + "\n");
+
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("items[0].status").value("CREATED"));
+
+        assertThat(imported).hasSize(3);
+    }
+
+    @Test
+    @DisplayName("Deve retornar erro ao importar conteudo malformado")
+    public void importBooksMalformedTest() throws Exception {
+        given(importService.importBooks(Mockito.any())).willAnswer(invocation -> {
+            Iterator<Book> books = invocation.getArgument(0);
+            books.forEachRemaining(book -> {
+            });
+            return BookImportResultDTO.builder().build();
+        });
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(BOOK_API.concat("/import"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content("[{\"title\": \"ok\"}, {\"title\": ");
+
+        mvc.perform(request)
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors[0]").value("Invalid import payload"));
+    }
+
     private BookDTO createNewBook() {
         return BookDTO.builder().title("As aventuras").author("Autor").isbn("001").build();
     }
+
+    @Test
+    @DisplayName("Deve exportar os livros filtrados em csv")
+    public void exportCsvTest() throws Exception {
+        Mockito.doAnswer(invocation -> {
+            Consumer<Book> action = invocation.getArgument(1);
+            action.accept(Book.builder().id(1L).title("As aventuras").author("Fulano").isbn("001").build());
+            action.accept(Book.builder().id(2L).title("Contos, \"vol 1\"").author("Beltrano").isbn("002").build());
+            return null;
+        }).when(exportService).forEachBook(Mockito.any(Book.class), Mockito.any());
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/export?format=csv&author=a")))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "text/csv;charset=UTF-8"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=books.csv"))
+                .andExpect(content().string("id,title,author,isbn\r\n"
+                        + "1,As aventuras,Fulano,001\r\n"
+                        + "2,\"Contos, \"\"vol 1\"\"\",Beltrano,002\r\n"));
+
+        Mockito.verify(exportService).forEachBook(Mockito.argThat(filter -> "a".equals(filter.getAuthor())), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("Deve exportar os livros em ndjson")
+    public void exportNdjsonTest() throws Exception {
+        Mockito.doAnswer(invocation -> {
+            Consumer<Book> action = invocation.getArgument(1);
+            action.accept(Book.builder().id(1L).title("As aventuras").author("Fulano").isbn("001").build());
+            action.accept(Book.builder().id(2L).title("Romance").author("Beltrano").isbn("002").build());
+            return null;
+        }).when(exportService).forEachBook(Mockito.any(Book.class), Mockito.any());
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/export")))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", MediaType.APPLICATION_NDJSON_VALUE))
+                .andExpect(content().string(
+                        "{\"id\":1,\"title\":\"As aventuras\",\"author\":\"Fulano\",\"isbn\":\"001\"}\n"
+                        + "{\"id\":2,\"title\":\"Romance\",\"author\":\"Beltrano\",\"isbn\":\"002\"}\n"));
+    }
+
+    @Test
+    @DisplayName("Deve recusar formato de exportacao desconhecido")
+    public void exportUnsupportedFormatTest() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/export?format=xml")))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors[0]").value("Unsupported export format"));
+
+        Mockito.verify(exportService, Mockito.never()).forEachBook(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("Deve retornar 304 sem mapear o livro quando o etag nao mudou")
+    public void getNotModifiedBookTest() throws Exception {
+        Book book = Book.builder().id(1L).title("As aventuras").author("Fulano").isbn("001")
+                .version(3L).updatedAt(Instant.parse("2021-10-01T10:00:00Z")).build();
+        given(service.getById(1L)).willReturn(Optional.of(book));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1")))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1-3\""))
+                .andExpect(header().string("Last-Modified", "Fri, 01 Oct 2021 10:00:00 GMT"));
+
+        Mockito.clearInvocations(bookMapper);
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1")).header("If-None-Match", "\"1-3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1"))
+                .header("If-Modified-Since", "Fri, 01 Oct 2021 10:00:00 GMT"))
+                .andExpect(status().isNotModified());
+        Mockito.verify(bookMapper, Mockito.never()).toDto(Mockito.any(Book.class));
+
+        book.setVersion(4L);
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1")).header("If-None-Match", "\"1-3\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1-4\""))
+                .andExpect(jsonPath("title").value("As aventuras"));
+    }
+
+    @Test
+    @DisplayName("Deve retornar 304 para a pagina de livros quando nada mudou")
+    public void findNotModifiedBooksTest() throws Exception {
+        Book book = Book.builder().id(1L).title("As aventuras").author("Fulano").isbn("001").version(0L).build();
+        given(service.find(Mockito.any(Book.class), Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<Book>(Arrays.asList(book), PageRequest.of(0, 20), 1));
+
+        String etag = mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?page=0&size=20")))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        Mockito.clearInvocations(bookMapper);
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?page=0&size=20")).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        Mockito.verify(bookMapper, Mockito.never()).toDto(Mockito.<Page<Book>>any());
+
+        book.setVersion(1L);
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?page=0&size=20")).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(1)));
+    }
+
+    @Test
+    @DisplayName("Nao deve reaproveitar o etag da pagina de livros para outra ordenacao ou filtro")
+    public void findEtagCoversQueryTest() throws Exception {
+        Book book = Book.builder().id(1L).title("As aventuras").author("Fulano").isbn("001").version(0L).build();
+        given(service.find(Mockito.any(Book.class), Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<Book>(Arrays.asList(book), PageRequest.of(0, 20), 1));
+
+        String etag = mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?author=fulano&sort=title,asc")))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?author=FULANO&sort=title,asc")).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?author=fulano&sort=title,desc")).header("If-None-Match", etag))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?author=fulano&sort=isbn,asc")).header("If-None-Match", etag))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?author=ful&sort=title,asc")).header("If-None-Match", etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @DisplayName("Deve atualizar o livro quando o If-Match corresponder a versao atual")
+    public void updateBookIfMatchTest() throws Exception {
+        Book book = Book.builder().id(1L).title("title").author("author").isbn("001").version(2L).build();
+        given(service.getById(1L)).willReturn(Optional.of(book));
+        given(service.update(Mockito.any(Book.class))).willAnswer(invocation -> {
+            Book updated = invocation.getArgument(0);
+            updated.setVersion(updated.getVersion() + 1);
+            return updated;
+        });
+
+        mvc.perform(MockMvcRequestBuilders.put(BOOK_API.concat("/1"))
+                .param("title", "As aventuras").param("author", "Fulano")
+                .header("If-Match", "\"1-2\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1-3\""))
+                .andExpect(jsonPath("title").value("As aventuras"));
+    }
+
+    @Test
+    @DisplayName("Deve retornar 412 ao atualizar com If-Match desatualizado")
+    public void updateBookStaleIfMatchTest() throws Exception {
+        Book book = Book.builder().id(1L).title("title").author("author").isbn("001").version(3L).build();
+        given(service.getById(1L)).willReturn(Optional.of(book));
+
+        mvc.perform(MockMvcRequestBuilders.put(BOOK_API.concat("/1")).header("If-Match", "\"1-2\""))
+                .andExpect(status().isPreconditionFailed());
+
+        Mockito.verify(service, Mockito.never()).update(Mockito.any(Book.class));
+    }
+
+    @Test
+    @DisplayName("Deve retornar 412 quando o livro mudar entre a verificacao do If-Match e a gravacao")
+    public void updateBookConcurrentIfMatchTest() throws Exception {
+        Book book = Book.builder().id(1L).title("title").author("author").isbn("001").version(2L).build();
+        given(service.getById(1L)).willReturn(Optional.of(book));
+        given(service.update(Mockito.any(Book.class)))
+                .willThrow(new ObjectOptimisticLockingFailureException(Book.class, 1L));
+
+        mvc.perform(MockMvcRequestBuilders.put(BOOK_API.concat("/1")).header("If-Match", "\"1-2\""))
+                .andExpect(status().isPreconditionFailed());
+        mvc.perform(MockMvcRequestBuilders.put(BOOK_API.concat("/1")))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("errors[0]").value("Resource was modified concurrently, reload and retry"));
+    }
 }
@@ -0,0 +1,102 @@
+package com.jjcdutra2015.libraryapi.api.resource;
+
+import com.jjcdutra2015.libraryapi.api.dto.LoandDTO;
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.Loan;
+import com.jjcdutra2015.libraryapi.model.entity.repository.BookRepository;
+import com.jjcdutra2015.libraryapi.model.entity.repository.LoanRepository;
+import com.jjcdutra2015.libraryapi.service.cache.BookIsbnCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static com.jjcdutra2015.libraryapi.api.resource.LoanControllerTest.API_LOAN;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class LoanControllerStressTest {
+
+    static final int BOOKS = 10;
+    static final int REQUESTS_PER_BOOK = 30;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    BookIsbnCache isbnCache;
+
+    @AfterEach
+    public void cleanUp() {
+        loanRepository.deleteAll();
+        bookRepository.deleteAll();
+        isbnCache.clear();
+    }
+
+    @Test
+    @DisplayName("Nao deve emprestar o mesmo livro duas vezes sob requisicoes concorrentes")
+    public void concurrentLoansTest() throws Exception {
+        for (int i = 0; i < BOOKS; i++) {
+            bookRepository.save(Book.builder().title("Livro " + i).author("Autor").isbn("stress-" + i).build());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<ResponseEntity<String>>> responses = new ArrayList<>();
+        try {
+            for (int r = 0; r < REQUESTS_PER_BOOK; r++) {
+                for (int i = 0; i < BOOKS; i++) {
+                    LoandDTO dto = LoandDTO.builder().isbn("stress-" + i).customer("Cliente " + r).build();
+                    responses.add(executor.submit(() -> {
+                        start.await();
+                        return restTemplate.postForEntity(API_LOAN, dto, String.class);
+                    }));
+                }
+            }
+            start.countDown();
+
+            int created = 0;
+            for (Future<ResponseEntity<String>> response : responses) {
+                HttpStatus status = response.get().getStatusCode();
+                if (status == HttpStatus.CREATED) {
+                    created++;
+                } else {
+                    assertThat(status).isEqualTo(HttpStatus.BAD_REQUEST);
+                    assertThat(response.get().getBody()).contains("Book already loaned");
+                }
+            }
+
+            List<Loan> loans = loanRepository.findAll();
+            Map<Long, Long> loansPerBook = loans.stream()
+                    .collect(Collectors.groupingBy(loan -> loan.getBook().getId(), Collectors.counting()));
+
+            assertThat(created).isEqualTo(BOOKS);
+            assertThat(loans).hasSize(BOOKS);
+            assertThat(loansPerBook.values()).containsOnly(1L);
+            assertThat(bookRepository.findAll()).extracting(Book::getAvailable).containsOnly(false);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
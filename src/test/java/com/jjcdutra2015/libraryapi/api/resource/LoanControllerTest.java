@@ -1,14 +1,21 @@
 package com.jjcdutra2015.libraryapi.api.resource;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jjcdutra2015.libraryapi.api.dto.LoanBatchItemDTO;
+import com.jjcdutra2015.libraryapi.api.dto.LoanBatchResultDTO;
 import com.jjcdutra2015.libraryapi.api.dto.LoanFilterDTO;
+import com.jjcdutra2015.libraryapi.api.dto.LoanReturnDTO;
 import com.jjcdutra2015.libraryapi.api.dto.LoandDTO;
 import com.jjcdutra2015.libraryapi.api.dto.ReturnedLoanDTO;
+import com.jjcdutra2015.libraryapi.api.pagination.KeysetCursor;
 import com.jjcdutra2015.libraryapi.exception.BusinessException;
 import com.jjcdutra2015.libraryapi.model.entity.Book;
 import com.jjcdutra2015.libraryapi.model.entity.Loan;
 import com.jjcdutra2015.libraryapi.service.BookService;
+import com.jjcdutra2015.libraryapi.service.ExportService;
+import com.jjcdutra2015.libraryapi.service.LoanBatchService;
 import com.jjcdutra2015.libraryapi.service.LoanService;
+import com.jjcdutra2015.libraryapi.service.OverdueLoanService;
 import com.jjcdutra2015.libraryapi.service.LoanServiceTest;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
@@ -23,6 +30,7 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
@@ -31,8 +39,11 @@ import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilde
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static com.jjcdutra2015.libraryapi.api.resource.BookControllerTest.BOOK_API;
 import static org.mockito.BDDMockito.given;
@@ -56,6 +67,15 @@ public class LoanControllerTest {
     @MockBean
     private LoanService loanService;
 
+    @MockBean
+    private LoanBatchService batchService;
+
+    @MockBean
+    private ExportService exportService;
+
+    @MockBean
+    private OverdueLoanService overdueService;
+
     @Test
     @DisplayName("Deve realizar um emprestimo")
     public void createLoanTest() throws Exception {
@@ -180,4 +200,161 @@ public class LoanControllerTest {
                 .andExpect(jsonPath("pageable.pageSize").value(10))
                 .andExpect(jsonPath("pageable.pageNumber").value(0));
     }
+
+    @Test
+    @DisplayName("Deve filtrar emprestimos sem total quando count=false")
+    public void filterLoanWithoutCountTest() throws Exception {
+        Loan loan = LoanServiceTest.createLoan();
+        loan.setId(1L);
+
+        given(loanService.findSlice(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class)))
+                .willReturn(new SliceImpl<Loan>(Arrays.asList(loan), PageRequest.of(0, 10), false));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(API_LOAN.concat("?customer=Fulano&page=0&size=10&count=false"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(jsonPath("hasNext").value(false))
+                .andExpect(jsonPath("totalElements").doesNotExist());
+        Mockito.verify(loanService, Mockito.never()).find(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Deve filtrar emprestimos por cursor")
+    public void filterLoanByCursorTest() throws Exception {
+        Loan loan = LoanServiceTest.createLoan();
+        loan.setId(5L);
+
+        given(loanService.find(Mockito.any(LoanFilterDTO.class), Mockito.isNull(), Mockito.eq(20)))
+                .willReturn(new SliceImpl<Loan>(Arrays.asList(loan), PageRequest.of(0, 20), false));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(API_LOAN.concat("?customer=Fulano&after="))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(jsonPath("content[0].id").value(5L))
+                .andExpect(jsonPath("content[0].isbn").value("123"))
+                .andExpect(jsonPath("next").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Deve realizar emprestimos em lote")
+    public void createBatchTest() throws Exception {
+        List<LoandDTO> dtos = Arrays.asList(
+                LoandDTO.builder().isbn("123").customer("Fulano").build(),
+                LoandDTO.builder().isbn("456").customer("Fulano").build());
+        String json = new ObjectMapper().writeValueAsString(dtos);
+
+        LoanBatchResultDTO result = LoanBatchResultDTO.builder().succeeded(1).failed(1).items(Arrays.asList(
+                LoanBatchItemDTO.builder().index(0).id(1L).isbn("123").status(LoanBatchItemDTO.Status.CREATED).build(),
+                LoanBatchItemDTO.builder().index(1).isbn("456").status(LoanBatchItemDTO.Status.ALREADY_LOANED)
+                        .message("Book already loaned").build()
+        )).build();
+        given(batchService.checkout(Mockito.anyList())).willReturn(result);
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(API_LOAN.concat("/batch"))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("succeeded").value(1))
+                .andExpect(jsonPath("failed").value(1))
+                .andExpect(jsonPath("items[0].id").value(1L))
+                .andExpect(jsonPath("items[1].status").value("ALREADY_LOANED"));
+    }
+
+    @Test
+    @DisplayName("Deve devolver emprestimos em lote")
+    public void returnBatchTest() throws Exception {
+        List<LoanReturnDTO> dtos = Arrays.asList(LoanReturnDTO.builder().id(1L).returned(true).build());
+        String json = new ObjectMapper().writeValueAsString(dtos);
+
+        LoanBatchResultDTO result = LoanBatchResultDTO.builder().succeeded(1).items(Arrays.asList(
+                LoanBatchItemDTO.builder().index(0).id(1L).isbn("123").status(LoanBatchItemDTO.Status.RETURNED).build()
+        )).build();
+        given(batchService.updateReturns(Mockito.anyList())).willReturn(result);
+
+        mvc.perform(patch(API_LOAN.concat("/batch"))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("succeeded").value(1))
+                .andExpect(jsonPath("items[0].status").value("RETURNED"));
+    }
+
+    @Test
+    @DisplayName("Deve recusar lote acima do tamanho maximo")
+    public void batchTooLargeTest() throws Exception {
+        List<LoanReturnDTO> dtos = new ArrayList<>();
+        for (long i = 0; i <= LoanController.MAX_BATCH_SIZE; i++) {
+            dtos.add(LoanReturnDTO.builder().id(i).returned(true).build());
+        }
+        String json = new ObjectMapper().writeValueAsString(dtos);
+
+        mvc.perform(patch(API_LOAN.concat("/batch"))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors[0]").value("Batch size must not exceed " + LoanController.MAX_BATCH_SIZE));
+
+        Mockito.verify(batchService, Mockito.never()).updateReturns(Mockito.anyList());
+    }
+
+    @Test
+    @DisplayName("Deve exportar os emprestimos filtrados em ndjson")
+    public void exportTest() throws Exception {
+        Mockito.doAnswer(invocation -> {
+            Consumer<Loan> action = invocation.getArgument(1);
+            Loan loan = LoanServiceTest.createLoan();
+            loan.setId(7L);
+            action.accept(loan);
+            return null;
+        }).when(exportService).forEachLoan(Mockito.any(LoanFilterDTO.class), Mockito.any());
+
+        mvc.perform(MockMvcRequestBuilders.get(API_LOAN.concat("/export?customer=Fulano")))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(Matchers.startsWith("{\"id\":7,\"isbn\":\"123\",\"customer\":\"Fulano\"")))
+                .andExpect(content().string(Matchers.endsWith("}\n")));
+
+        Mockito.verify(exportService).forEachLoan(
+                Mockito.argThat(filter -> "Fulano".equals(filter.getCustomer())), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("Deve listar emprestimos atrasados por cursor de data e id")
+    public void findOverdueTest() throws Exception {
+        Loan loan = LoanServiceTest.createLoan();
+        loan.setId(5L);
+        loan.setLoanDate(LocalDate.of(2021, 1, 10));
+
+        given(overdueService.findOverdue(LocalDate.of(2021, 1, 9), 4L, 1))
+                .willReturn(new SliceImpl<Loan>(Arrays.asList(loan), PageRequest.of(0, 1), true));
+
+        String after = KeysetCursor.encode(LocalDate.of(2021, 1, 9), 4L);
+        mvc.perform(MockMvcRequestBuilders.get(API_LOAN.concat("/overdue?size=1&after=" + after))
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(jsonPath("content[0].id").value(5L))
+                .andExpect(jsonPath("next").value(KeysetCursor.encode(LocalDate.of(2021, 1, 10), 5L)));
+    }
+
+    @Test
+    @DisplayName("Deve recusar cursor invalido ao listar emprestimos atrasados")
+    public void findOverdueInvalidCursorTest() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get(API_LOAN.concat("/overdue?after=" + KeysetCursor.encode(5L)))
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors[0]").value("Invalid cursor"));
+    }
 }
@@ -0,0 +1,84 @@
+package com.jjcdutra2015.libraryapi.api.resource;
+
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.repository.BookRepository;
+import com.jjcdutra2015.libraryapi.model.entity.repository.LoanRepository;
+import com.jjcdutra2015.libraryapi.service.cache.BookIsbnCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+public class LoanReturnIntegrationTest {
+
+    static final String LOAN_API = "/api/loans";
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    BookIsbnCache isbnCache;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @AfterEach
+    public void cleanUp() {
+        loanRepository.deleteAll();
+        bookRepository.deleteAll();
+        isbnCache.clear();
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    @DisplayName("Nao deve liberar o livro ao devolver de novo um emprestimo enquanto outro esta ativo")
+    public void returnAgainWhileAnotherLoanIsActiveTest() throws Exception {
+        Book book = bookRepository.save(Book.builder().title("As aventuras").author("Fulano").isbn("001").build());
+        String first = loan("Fulano");
+        giveBack(first);
+        loan("Ciclano");
+
+        giveBack(first);
+
+        assertThat(bookRepository.findById(book.getId())).hasValueSatisfying(found -> assertThat(found.getAvailable()).isFalse());
+        mvc.perform(MockMvcRequestBuilders.get(BookControllerTest.BOOK_API + "/available"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content").isEmpty());
+    }
+
+    private String loan(String customer) throws Exception {
+        return mvc.perform(MockMvcRequestBuilders.post(LOAN_API)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"isbn\": \"001\", \"customer\": \"" + customer + "\"}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    private void giveBack(String id) throws Exception {
+        mvc.perform(MockMvcRequestBuilders.patch(LOAN_API + "/" + id)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"returned\": true}"))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,84 @@
+package com.jjcdutra2015.libraryapi.api.throttle;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdmissionControlFilterTest {
+
+    AdmissionControlFilter filter;
+
+    @BeforeEach
+    public void setup() {
+        filter = new AdmissionControlFilter(1, Duration.ofMillis(50), new ObjectMapper());
+    }
+
+    @Test
+    @DisplayName("Deve deixar a requisicao passar e devolver a permissao ao final")
+    public void admitTest() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/books"), response, new MockFilterChain());
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(filter.availablePermits()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve rejeitar com 503 quando todas as permissoes estao em uso")
+    public void rejectWhenSaturatedTest() throws Exception {
+        CountDownLatch inside = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        HttpServlet slowServlet = new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) {
+                inside.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> holder = executor.submit(() -> {
+                filter.doFilter(new MockHttpServletRequest("GET", "/api/books"), new MockHttpServletResponse(),
+                        new MockFilterChain(slowServlet));
+                return null;
+            });
+            assertThat(inside.await(5, TimeUnit.SECONDS)).isTrue();
+
+            MockHttpServletResponse rejected = new MockHttpServletResponse();
+            filter.doFilter(new MockHttpServletRequest("GET", "/api/books"), rejected, new MockFilterChain());
+
+            assertThat(rejected.getStatus()).isEqualTo(503);
+            assertThat(rejected.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+            assertThat(rejected.getContentAsString()).contains("Server busy, retry later");
+
+            release.countDown();
+            holder.get(5, TimeUnit.SECONDS);
+            assertThat(filter.availablePermits()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
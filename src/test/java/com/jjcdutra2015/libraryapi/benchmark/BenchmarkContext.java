@@ -0,0 +1,103 @@
+package com.jjcdutra2015.libraryapi.benchmark;
+
+import com.jjcdutra2015.libraryapi.LibraryApiApplication;
+import com.jjcdutra2015.libraryapi.service.search.BookSearchIndexLoader;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Boots the application without the web layer on a private in-memory H2 database and seeds it
+ * with {@code books} books, each with {@code loansPerBook} returned loans, so benchmarks run
+ * against realistic data volumes.
+ */
+final class BenchmarkContext {
+
+    private static final int BATCH_SIZE = 5_000;
+
+    private BenchmarkContext() {
+    }
+
+    static String isbn(long n) {
+        return "isbn-" + n;
+    }
+
+    static String customer(long n) {
+        return "Cliente " + n;
+    }
+
+    static ConfigurableApplicationContext start(int books, int loansPerBook, String... properties) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(LibraryApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                        "spring.devtools.restart.enabled=false",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=warn")
+                .properties(properties)
+                .run();
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        seedBooks(jdbcTemplate, books);
+        seedLoans(jdbcTemplate, books, loansPerBook);
+        // Seeded rows carry explicit ids, so move the sequences past them as the migration script does
+        jdbcTemplate.execute("alter sequence book_seq restart with (select coalesce(max(id), 0) + 1 from book)");
+        jdbcTemplate.execute("alter sequence loan_seq restart with (select coalesce(max(id), 0) + 1 from loan)");
+        // The index loader already ran on the empty database at startup
+        context.getBean(BookSearchIndexLoader.class).run(new DefaultApplicationArguments());
+        return context;
+    }
+
+    private static void seedBooks(JdbcTemplate jdbcTemplate, int books) {
+        List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        for (long n = 1; n <= books; n++) {
+            rows.add(new Object[]{n, "Titulo " + n, "Autor " + (n % 1_000), isbn(n)});
+            if (rows.size() == BATCH_SIZE) {
+                insertBooks(jdbcTemplate, rows);
+                rows.clear();
+            }
+        }
+        if (!rows.isEmpty()) {
+            insertBooks(jdbcTemplate, rows);
+        }
+    }
+
+    private static void insertBooks(JdbcTemplate jdbcTemplate, List<Object[]> rows) {
+        jdbcTemplate.batchUpdate(
+                "insert into book (id, title, author, isbn, available, version, updated_at) values (?, ?, ?, ?, true, 0, current_timestamp)", rows);
+    }
+
+    private static void seedLoans(JdbcTemplate jdbcTemplate, int books, int loansPerBook) {
+        if (loansPerBook <= 0) {
+            return;
+        }
+        long id = 1;
+        Date loanDate = Date.valueOf(LocalDate.now().minusDays(30));
+        List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        for (long n = 0; n < books; n++) {
+            for (int loan = 0; loan < loansPerBook; loan++) {
+                rows.add(new Object[]{id++, customer((n + loan) % 1_000), 1 + n, loanDate});
+                if (rows.size() == BATCH_SIZE) {
+                    insertLoans(jdbcTemplate, rows);
+                    rows.clear();
+                }
+            }
+        }
+        if (!rows.isEmpty()) {
+            insertLoans(jdbcTemplate, rows);
+        }
+    }
+
+    private static void insertLoans(JdbcTemplate jdbcTemplate, List<Object[]> rows) {
+        jdbcTemplate.batchUpdate(
+                "insert into loan (id, customer, id_book, loan_date, returned, active_book_id) values (?, ?, ?, ?, true, null)", rows);
+    }
+}
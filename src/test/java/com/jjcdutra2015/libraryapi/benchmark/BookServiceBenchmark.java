@@ -0,0 +1,75 @@
+package com.jjcdutra2015.libraryapi.benchmark;
+
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.service.BookService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookServiceBenchmark {
+
+    @Param({"10000"})
+    int books;
+
+    @Param({"0"})
+    int loansPerBook;
+
+    @Param({"20"})
+    int pageSize;
+
+    ConfigurableApplicationContext context;
+    BookService service;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start(books, loansPerBook);
+        service = context.getBean(BookService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<Book> findByExample() {
+        Book filter = Book.builder().author("Autor " + ThreadLocalRandom.current().nextInt(1_000)).build();
+        return service.find(filter, PageRequest.of(0, pageSize));
+    }
+
+    @Benchmark
+    public Slice<Book> findAfter() {
+        long after = ThreadLocalRandom.current().nextLong(books);
+        return service.find(Book.builder().build(), after, pageSize);
+    }
+
+    @Benchmark
+    public Page<Book> search() {
+        String text = "autor " + ThreadLocalRandom.current().nextInt(1_000);
+        return service.search(text, PageRequest.of(0, pageSize));
+    }
+
+    @Benchmark
+    public Optional<Book> getBookByIsbn() {
+        return service.getBookByIsbn(BenchmarkContext.isbn(1 + ThreadLocalRandom.current().nextLong(books)));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BookServiceBenchmark.class.getSimpleName()).build()).run();
+    }
+}
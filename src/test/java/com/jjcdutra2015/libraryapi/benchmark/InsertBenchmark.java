@@ -0,0 +1,91 @@
+package com.jjcdutra2015.libraryapi.benchmark;
+
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.Loan;
+import com.jjcdutra2015.libraryapi.model.entity.repository.BookRepository;
+import com.jjcdutra2015.libraryapi.model.entity.repository.LoanRepository;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Inserts {@value #ROWS} books or loans per transaction through Spring Data, so the score reflects
+ * whether Hibernate can batch the inserts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InsertBenchmark {
+
+    static final int ROWS = 500;
+
+    @Param({"10000"})
+    int books;
+
+    ConfigurableApplicationContext context;
+    BookRepository bookRepository;
+    LoanRepository loanRepository;
+    TransactionTemplate transactionTemplate;
+    AtomicLong isbns;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start(books, 0);
+        bookRepository = context.getBean(BookRepository.class);
+        loanRepository = context.getBean(LoanRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        isbns = new AtomicLong(books);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<Book> insertBooks() {
+        List<Book> batch = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            long n = isbns.incrementAndGet();
+            batch.add(Book.builder().title("Titulo " + n).author("Autor " + (n % 1_000)).isbn(BenchmarkContext.isbn(n)).build());
+        }
+        return transactionTemplate.execute(status -> bookRepository.saveAll(batch));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<Loan> insertLoans() {
+        return transactionTemplate.execute(status -> {
+            List<Loan> batch = new ArrayList<>(ROWS);
+            for (int i = 0; i < ROWS; i++) {
+                long bookId = 1 + ThreadLocalRandom.current().nextLong(books);
+                batch.add(Loan.builder()
+                        .book(bookRepository.getById(bookId))
+                        .customer(BenchmarkContext.customer(bookId % 1_000))
+                        .loanDate(LocalDate.now())
+                        .returned(true)
+                        .build());
+            }
+            return loanRepository.saveAll(batch);
+        });
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(InsertBenchmark.class.getSimpleName()).build()).run();
+    }
+}
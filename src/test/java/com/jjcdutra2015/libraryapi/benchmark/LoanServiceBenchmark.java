@@ -0,0 +1,77 @@
+package com.jjcdutra2015.libraryapi.benchmark;
+
+import com.jjcdutra2015.libraryapi.api.dto.LoanFilterDTO;
+import com.jjcdutra2015.libraryapi.api.dto.LoandDTO;
+import com.jjcdutra2015.libraryapi.api.mapper.LoanMapper;
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.Loan;
+import com.jjcdutra2015.libraryapi.service.LoanService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoanServiceBenchmark {
+
+    @Param({"10000"})
+    int books;
+
+    @Param({"5"})
+    int loansPerBook;
+
+    @Param({"20"})
+    int pageSize;
+
+    ConfigurableApplicationContext context;
+    LoanService service;
+    LoanMapper loanMapper;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start(books, loansPerBook);
+        service = context.getBean(LoanService.class);
+        loanMapper = context.getBean(LoanMapper.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Loan saveAndReturn() {
+        long bookId = 1 + ThreadLocalRandom.current().nextLong(books);
+        Loan loan = Loan.builder()
+                .book(Book.builder().id(bookId).build())
+                .customer(BenchmarkContext.customer(bookId % 1_000))
+                .loanDate(LocalDate.now())
+                .build();
+        loan = service.save(loan);
+        loan.setReturned(true);
+        return service.update(loan);
+    }
+
+    @Benchmark
+    public Page<LoandDTO> findAndMap() {
+        long n = ThreadLocalRandom.current().nextLong(books);
+        LoanFilterDTO filter = LoanFilterDTO.builder().isbn(BenchmarkContext.isbn(1 + n)).customer(BenchmarkContext.customer(n % 1_000)).build();
+        return loanMapper.toDto(service.find(filter, PageRequest.of(0, pageSize)));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LoanServiceBenchmark.class.getSimpleName()).build()).run();
+    }
+}
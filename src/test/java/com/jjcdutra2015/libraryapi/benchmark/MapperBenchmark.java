@@ -0,0 +1,94 @@
+package com.jjcdutra2015.libraryapi.benchmark;
+
+import com.jjcdutra2015.libraryapi.api.dto.BookDTO;
+import com.jjcdutra2015.libraryapi.api.dto.LoandDTO;
+import com.jjcdutra2015.libraryapi.api.mapper.BookMapper;
+import com.jjcdutra2015.libraryapi.api.mapper.LoanMapper;
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.Loan;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperBenchmark {
+
+    @Param({"10", "100"})
+    int pageSize;
+
+    ModelMapper modelMapper;
+    BookMapper bookMapper;
+    LoanMapper loanMapper;
+
+    Page<Book> books;
+    Page<Loan> loans;
+
+    @Setup
+    public void setup() {
+        modelMapper = new ModelMapper();
+        bookMapper = new BookMapper();
+        loanMapper = new LoanMapper(bookMapper);
+
+        List<Book> bookList = new ArrayList<>();
+        List<Loan> loanList = new ArrayList<>();
+        for (long i = 1; i <= pageSize; i++) {
+            Book book = Book.builder().id(i).title("Titulo " + i).author("Autor " + i).isbn("isbn-" + i).build();
+            bookList.add(book);
+            loanList.add(Loan.builder().id(i).customer("Cliente " + i).book(book).loanDate(LocalDate.now()).build());
+        }
+        PageRequest pageRequest = PageRequest.of(0, pageSize);
+        books = new PageImpl<>(bookList, pageRequest, 10_000);
+        loans = new PageImpl<>(loanList, pageRequest, 10_000);
+    }
+
+    @Benchmark
+    public Page<BookDTO> modelMapperBooks() {
+        List<BookDTO> list = books.getContent().stream()
+                .map(entity -> modelMapper.map(entity, BookDTO.class))
+                .collect(Collectors.toList());
+        return new PageImpl<>(list, books.getPageable(), books.getTotalElements());
+    }
+
+    @Benchmark
+    public Page<BookDTO> bookMapperBooks() {
+        return bookMapper.toDto(books);
+    }
+
+    @Benchmark
+    public Page<LoandDTO> modelMapperLoans() {
+        List<LoandDTO> list = loans.getContent().stream()
+                .map(entity -> {
+                    BookDTO bookDTO = modelMapper.map(entity.getBook(), BookDTO.class);
+                    LoandDTO loandDTO = modelMapper.map(entity, LoandDTO.class);
+                    loandDTO.setBook(bookDTO);
+                    return loandDTO;
+                })
+                .collect(Collectors.toList());
+        return new PageImpl<>(list, loans.getPageable(), loans.getTotalElements());
+    }
+
+    @Benchmark
+    public Page<LoandDTO> loanMapperLoans() {
+        return loanMapper.toDto(loans);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MapperBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,76 @@
+package com.jjcdutra2015.libraryapi.benchmark;
+
+import com.jjcdutra2015.libraryapi.api.metrics.SqlStatementCounter;
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.service.BookService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Slice;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Same service calls with and without instrumentation. The uninstrumented run disables every meter and
+ * the aspect proxies that drive {@code @Timed}; the difference is the cost of leaving metrics on.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+
+    @Param({"10000"})
+    int books;
+
+    @Param({"true", "false"})
+    boolean instrumented;
+
+    ConfigurableApplicationContext context;
+    BookService service;
+    SqlStatementCounter statementCounter;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = instrumented
+                ? BenchmarkContext.start(books, 0)
+                : BenchmarkContext.start(books, 0, "management.metrics.enable.all=false", "spring.aop.auto=false");
+        service = context.getBean(BookService.class);
+        statementCounter = context.getBean(SqlStatementCounter.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<Book> getBookByIsbn() {
+        return service.getBookByIsbn(BenchmarkContext.isbn(1 + ThreadLocalRandom.current().nextLong(books)));
+    }
+
+    @Benchmark
+    public Slice<Book> findAfter() {
+        // Mirrors the per-request window the metrics filter opens around each api call
+        if (instrumented) {
+            statementCounter.start();
+        }
+        try {
+            return service.find(Book.builder().build(), ThreadLocalRandom.current().nextLong(books), 20);
+        } finally {
+            if (instrumented) {
+                statementCounter.stop();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MetricsOverheadBenchmark.class.getSimpleName()).build()).run();
+    }
+}
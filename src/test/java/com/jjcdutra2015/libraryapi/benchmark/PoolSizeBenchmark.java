@@ -0,0 +1,85 @@
+package com.jjcdutra2015.libraryapi.benchmark;
+
+import com.jjcdutra2015.libraryapi.api.dto.LoanFilterDTO;
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.Loan;
+import com.jjcdutra2015.libraryapi.service.BookService;
+import com.jjcdutra2015.libraryapi.service.LoanService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load harness for the {@code library.datasource.*} tuning: {@value #CLIENTS} threads stand in for
+ * concurrent requests against the tuned pool, varying the pool size and H2's statement cache. Run with
+ * {@code mvn -Pbenchmark verify -Djmh.include=PoolSizeBenchmark} on the target hardware and compare
+ * against {@code cores * 2 + 1} before enabling the tuning in the {@code perf} profile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(PoolSizeBenchmark.CLIENTS)
+@Fork(1)
+public class PoolSizeBenchmark {
+
+    static final int CLIENTS = 16;
+
+    @Param({"10000"})
+    int books;
+
+    @Param({"5"})
+    int loansPerBook;
+
+    // Not below 2: Flyway holds one connection for its lock while migrating on another
+    @Param({"3", "10", "30"})
+    int poolSize;
+
+    @Param({"8", "256"})
+    int statementCacheSize;
+
+    ConfigurableApplicationContext context;
+    BookService bookService;
+    LoanService loanService;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start(books, loansPerBook,
+                "spring.profiles.active=perf",
+                "library.datasource.tuning.enabled=true",
+                "spring.datasource.hikari.maximum-pool-size=" + poolSize,
+                "library.datasource.statement-cache-size=" + statementCacheSize);
+        bookService = context.getBean(BookService.class);
+        loanService = context.getBean(LoanService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<Loan> findLoans() {
+        long n = ThreadLocalRandom.current().nextLong(books);
+        LoanFilterDTO filter = LoanFilterDTO.builder().customer(BenchmarkContext.customer(n % 1_000)).build();
+        return loanService.find(filter, PageRequest.of(0, 20));
+    }
+
+    // Not getById: the second-level cache would answer it without touching the pool
+    @Benchmark
+    public Page<Book> findAvailableBooks() {
+        return bookService.findAvailable(PageRequest.of(ThreadLocalRandom.current().nextInt(100), 20));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PoolSizeBenchmark.class.getSimpleName()).build()).run();
+    }
+}
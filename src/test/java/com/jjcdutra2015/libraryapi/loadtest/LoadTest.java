@@ -0,0 +1,86 @@
+package com.jjcdutra2015.libraryapi.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Closed-loop load generator against a running instance: {@code clients} concurrent clients each
+ * send {@code requests} GETs back to back and the latency percentiles and status codes are printed.
+ *
+ * <pre>
+ * java -cp target/test-classes com.jjcdutra2015.libraryapi.loadtest.LoadTest \
+ *     http://localhost:8080/api/books?title=a 10000 20
+ * </pre>
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        URI uri = URI.create(args.length > 0 ? args[0] : "http://localhost:8080/api/books");
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofSeconds(60))
+                .GET()
+                .build();
+
+        long[] latencies = new long[clients * requests];
+        AtomicInteger recorded = new AtomicInteger();
+        Map<String, AtomicInteger> statuses = new ConcurrentHashMap<>();
+
+        long start = System.nanoTime();
+        List<CompletableFuture<Void>> loops = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            loops.add(loop(client, request, requests, latencies, recorded, statuses));
+        }
+        CompletableFuture.allOf(loops.toArray(new CompletableFuture[0])).join();
+        long elapsed = System.nanoTime() - start;
+
+        int count = recorded.get();
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        System.out.printf("requests=%d clients=%d elapsed=%.1fs throughput=%.0f req/s%n",
+                count, clients, elapsed / 1e9, count / (elapsed / 1e9));
+        System.out.printf("p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms%n",
+                percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), percentile(sorted, 100));
+        System.out.println("status=" + new TreeMap<>(statuses));
+    }
+
+    private static CompletableFuture<Void> loop(HttpClient client, HttpRequest request, int remaining, long[] latencies,
+                                                AtomicInteger recorded, Map<String, AtomicInteger> statuses) {
+        if (remaining == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long sent = System.nanoTime();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, error) -> {
+                    latencies[recorded.getAndIncrement()] = System.nanoTime() - sent;
+                    String status = error != null ? error.getClass().getSimpleName() : String.valueOf(response.statusCode());
+                    statuses.computeIfAbsent(status, key -> new AtomicInteger()).incrementAndGet();
+                    return null;
+                })
+                .thenCompose(ignored -> loop(client, request, remaining - 1, latencies, recorded, statuses));
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
@@ -0,0 +1,67 @@
+package com.jjcdutra2015.libraryapi.model.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DataSourceSettingsValidatorTest {
+
+    @Test
+    @DisplayName("Deve aceitar um pool dimensionado pelos nucleos sem avisos")
+    public void tunedSettingsTest() {
+        HikariDataSource dataSource = new HikariDataSource();
+        new HikariTuningPostProcessor(HikariTuningPostProcessor.poolSize(4, 2, 1), false, false, 256)
+                .postProcessAfterInitialization(dataSource, "dataSource");
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("spring.jpa.open-in-view", "false")
+                .withProperty("spring.jpa.properties.hibernate.jdbc.batch_size", "50");
+
+        List<String> warnings = new DataSourceSettingsValidator(dataSource, environment, 4).validate();
+
+        assertThat(dataSource.getMaximumPoolSize()).isEqualTo(9);
+        assertThat(dataSource.getMinimumIdle()).isEqualTo(9);
+        assertThat(warnings).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve avisar sobre configuracoes arriscadas de conexao e jdbc")
+    public void riskySettingsTest() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setMaximumPoolSize(50);
+        dataSource.setMinimumIdle(5);
+        dataSource.setConnectionTimeout(60_000);
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("library.web.execution-mode", "bounded")
+                .withProperty("library.web.max-concurrent-requests", "100");
+
+        List<String> warnings = new DataSourceSettingsValidator(dataSource, environment, 4).validate();
+
+        assertThat(warnings).hasSize(6);
+        assertThat(warnings).anyMatch(warning -> warning.startsWith("spring.jpa.open-in-view"));
+        assertThat(warnings).anyMatch(warning -> warning.startsWith("hibernate.jdbc.batch_size"));
+        assertThat(warnings).anyMatch(warning -> warning.startsWith("maximum-pool-size 50"));
+        assertThat(warnings).anyMatch(warning -> warning.startsWith("minimum-idle 5"));
+        assertThat(warnings).anyMatch(warning -> warning.startsWith("connection-timeout 60000ms"));
+        assertThat(warnings).anyMatch(warning -> warning.startsWith("library.web.max-concurrent-requests 100"));
+    }
+
+    @Test
+    @DisplayName("Nao deve sobrescrever o tamanho do pool nem o cache de instrucoes configurados")
+    public void explicitSettingsWinTest() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setMaximumPoolSize(20);
+        dataSource.setMinimumIdle(2);
+        dataSource.setJdbcUrl("jdbc:h2:mem:library;QUERY_CACHE_SIZE=16");
+
+        new HikariTuningPostProcessor(9, true, true, 256).postProcessAfterInitialization(dataSource, "dataSource");
+
+        assertThat(dataSource.getMaximumPoolSize()).isEqualTo(20);
+        assertThat(dataSource.getMinimumIdle()).isEqualTo(2);
+        assertThat(dataSource.getJdbcUrl()).isEqualTo("jdbc:h2:mem:library;QUERY_CACHE_SIZE=16");
+    }
+}
@@ -0,0 +1,85 @@
+package com.jjcdutra2015.libraryapi.model.datasource;
+
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.Loan;
+import com.jjcdutra2015.libraryapi.model.entity.repository.BookRepository;
+import com.jjcdutra2015.libraryapi.model.entity.repository.LoanRepository;
+import com.jjcdutra2015.libraryapi.service.cache.BookIsbnCache;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@ActiveProfiles({"test", "perf"})
+@AutoConfigureMockMvc
+public class PerfProfileTest {
+
+    @Autowired
+    ApplicationContext context;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    DataSourceSettingsValidator validator;
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    BookIsbnCache isbnCache;
+
+    @AfterEach
+    public void cleanUp() {
+        loanRepository.deleteAll();
+        bookRepository.deleteAll();
+        isbnCache.clear();
+    }
+
+    @Test
+    @DisplayName("Deve manter o pool padrao enquanto a afinacao nao for medida e desligar o open-in-view")
+    public void defaultDataSourceTest() throws Exception {
+        HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+
+        assertThat(context.getBeansOfType(HikariTuningPostProcessor.class)).isEmpty();
+        assertThat(hikari.getMaximumPoolSize()).isEqualTo(10);
+        assertThat(hikari.getJdbcUrl()).doesNotContain(HikariTuningPostProcessor.H2_QUERY_CACHE_SIZE);
+        assertThat(context.getBeansOfType(OpenEntityManagerInViewInterceptor.class)).isEmpty();
+        assertThat(validator.validate())
+                .noneMatch(warning -> warning.startsWith("spring.jpa.open-in-view"))
+                .noneMatch(warning -> warning.startsWith("hibernate.jdbc.batch_size"));
+    }
+
+    @Test
+    @DisplayName("Deve listar emprestimos com os livros sem open-in-view")
+    public void loansWithoutOpenInViewTest() throws Exception {
+        Book book = bookRepository.save(Book.builder().title("As aventuras").author("Fulano").isbn("001").build());
+        loanRepository.save(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build());
+
+        mvc.perform(MockMvcRequestBuilders.get("/api/loans?customer=Fulano"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content[0].book.title").value("As aventuras"));
+    }
+}
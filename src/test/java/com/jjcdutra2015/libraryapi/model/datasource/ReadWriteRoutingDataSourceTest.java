@@ -0,0 +1,90 @@
+package com.jjcdutra2015.libraryapi.model.datasource;
+
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.service.BookService;
+import com.jjcdutra2015.libraryapi.service.cache.BookIsbnCache;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+        "library.datasource.replica.url=jdbc:h2:mem:routing-replica;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "library.datasource.replica.read-your-writes-window=0s"
+})
+@ActiveProfiles("test")
+public class ReadWriteRoutingDataSourceTest {
+
+    @Autowired
+    Flyway flyway;
+
+    @Autowired
+    BookService bookService;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    DataSource primary;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    DataSource replica;
+
+    @Autowired
+    BookIsbnCache isbnCache;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    public void setUp() {
+        Flyway.configure().configuration(flyway.getConfiguration()).dataSource(replica).load().migrate();
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        for (DataSource dataSource : new DataSource[]{primary, replica}) {
+            JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+            jdbc.update("delete from loan");
+            jdbc.update("delete from book");
+        }
+        isbnCache.clear();
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    @DisplayName("Deve ler do replica nas transacoes somente leitura")
+    public void readOnlyGoesToReplicaTest() {
+        new JdbcTemplate(replica).update("insert into book (id, title, author, isbn, available, version, updated_at) "
+                + "values (1000, 'Replica', 'Fulano', '001', true, 0, current_timestamp)");
+
+        assertThat(bookService.getById(1000L)).map(Book::getTitle).hasValue("Replica");
+        Page<Book> page = bookService.find(Book.builder().title("Replica").build(), PageRequest.of(0, 10));
+        assertThat(page.getContent()).extracting(Book::getIsbn).containsExactly("001");
+    }
+
+    @Test
+    @DisplayName("Deve gravar no primario e nao ler a gravacao do replica fora da janela")
+    public void writesGoToPrimaryTest() {
+        Book saved = bookService.save(Book.builder().title("Primario").author("Fulano").isbn("002").build());
+
+        assertThat(new JdbcTemplate(primary).queryForObject("select count(*) from book where id = ?", Long.class, saved.getId()))
+                .isEqualTo(1L);
+        assertThat(new JdbcTemplate(replica).queryForObject("select count(*) from book", Long.class)).isZero();
+        Page<Book> page = bookService.find(Book.builder().title("Primario").build(), PageRequest.of(0, 10));
+        assertThat(page.getContent()).isEmpty();
+    }
+}
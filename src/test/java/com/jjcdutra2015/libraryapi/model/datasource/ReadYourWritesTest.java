@@ -0,0 +1,127 @@
+package com.jjcdutra2015.libraryapi.model.datasource;
+
+import com.jjcdutra2015.libraryapi.api.dto.LoanFilterDTO;
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.Loan;
+import com.jjcdutra2015.libraryapi.service.BookService;
+import com.jjcdutra2015.libraryapi.service.LoanService;
+import com.jjcdutra2015.libraryapi.service.cache.BookIsbnCache;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import javax.servlet.http.Cookie;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ryw-primary;DB_CLOSE_DELAY=-1",
+        "library.datasource.replica.url=jdbc:h2:mem:ryw-replica;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "library.datasource.replica.read-your-writes-window=10m"
+})
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+public class ReadYourWritesTest {
+
+    static final String BOOK_ROW = "insert into book (id, title, author, isbn, available, version, updated_at) "
+            + "values (1000, ?, 'Fulano', '001', true, 0, current_timestamp)";
+
+    @Autowired
+    Flyway flyway;
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    BookService bookService;
+
+    @Autowired
+    LoanService loanService;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    DataSource primary;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    DataSource replica;
+
+    @Autowired
+    BookIsbnCache isbnCache;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    public void setUp() {
+        Flyway.configure().configuration(flyway.getConfiguration()).dataSource(replica).load().migrate();
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        for (DataSource dataSource : new DataSource[]{primary, replica}) {
+            JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+            jdbc.update("delete from loan");
+            jdbc.update("delete from book");
+        }
+        isbnCache.clear();
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    @DisplayName("Deve ler do primario logo apos registrar um emprestimo")
+    public void readYourWritesTest() {
+        new JdbcTemplate(replica).update("insert into book (id, title, author, isbn, available, version, updated_at) "
+                + "values (1000, 'Replica', 'Fulano', '001', true, 0, current_timestamp)");
+        assertThat(bookService.getById(1000L)).isPresent();
+
+        Book book = bookService.save(Book.builder().title("Primario").author("Fulano").isbn("002").build());
+        loanService.save(Loan.builder().book(book).customer("Ciclano").loanDate(LocalDate.now()).build());
+
+        LoanFilterDTO filter = LoanFilterDTO.builder().customer("Ciclano").build();
+        assertThat(loanService.find(filter, PageRequest.of(0, 10)).getContent())
+                .extracting(loan -> loan.getBook().getIsbn()).containsExactly("002");
+        entityManagerFactory.getCache().evictAll();
+        assertThat(bookService.getById(1000L)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve manter no primario apenas as leituras do cliente que gravou")
+    public void readYourWritesPerClientTest() throws Exception {
+        new JdbcTemplate(primary).update(BOOK_ROW, "Primario");
+        new JdbcTemplate(replica).update(BOOK_ROW, "Replica");
+
+        Cookie lastWrite = mvc.perform(MockMvcRequestBuilders.put("/api/books/1000")
+                        .param("title", "Novo titulo")
+                        .param("author", "Fulano"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getCookie(ReadYourWritesFilter.COOKIE);
+        assertThat(lastWrite).isNotNull();
+        entityManagerFactory.getCache().evictAll();
+
+        mvc.perform(MockMvcRequestBuilders.get("/api/books/1000").cookie(lastWrite))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("title").value("Novo titulo"));
+        entityManagerFactory.getCache().evictAll();
+        mvc.perform(MockMvcRequestBuilders.get("/api/books/1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("title").value("Replica"));
+    }
+}
@@ -0,0 +1,103 @@
+package com.jjcdutra2015.libraryapi.model.datasource;
+
+import com.jjcdutra2015.libraryapi.service.cache.BookIsbnCache;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:osiv-primary;DB_CLOSE_DELAY=-1",
+        "library.datasource.replica.url=jdbc:h2:mem:osiv-replica;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "library.datasource.replica.read-your-writes-window=0s",
+        "spring.jpa.open-in-view=true"
+})
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+public class ReplicaOpenInViewTest {
+
+    static final String BOOK_ROW = "insert into book (id, title, author, isbn, available, version, updated_at) "
+            + "values (1000, 'As aventuras', 'Fulano', '001', true, 0, current_timestamp)";
+
+    @Autowired
+    Flyway flyway;
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    DataSource primary;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    DataSource replica;
+
+    @Autowired
+    BookIsbnCache isbnCache;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    public void setUp() {
+        Flyway.configure().configuration(flyway.getConfiguration()).dataSource(replica).load().migrate();
+        new JdbcTemplate(primary).update(BOOK_ROW);
+        new JdbcTemplate(replica).update(BOOK_ROW);
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        for (DataSource dataSource : new DataSource[]{primary, replica}) {
+            JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+            jdbc.update("delete from loan");
+            jdbc.update("delete from book");
+        }
+        isbnCache.clear();
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    @DisplayName("Deve gravar o emprestimo no primario mesmo apos ler o livro da replica na mesma requisicao")
+    public void createLoanAfterReplicaReadTest() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post("/api/loans")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"isbn\": \"001\", \"customer\": \"Fulano\"}"))
+                .andExpect(status().isCreated());
+
+        assertThat(count(primary, "select count(*) from loan")).isEqualTo(1);
+        assertThat(count(replica, "select count(*) from loan")).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve atualizar o livro no primario mesmo apos le-lo da replica na mesma requisicao")
+    public void updateBookAfterReplicaReadTest() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.put("/api/books/1000")
+                        .param("title", "Novo titulo")
+                        .param("author", "Ciclano"))
+                .andExpect(status().isOk());
+
+        assertThat(count(primary, "select count(*) from book where title = 'Novo titulo'")).isEqualTo(1);
+        assertThat(count(replica, "select count(*) from book where title = 'Novo titulo'")).isZero();
+    }
+
+    private int count(DataSource dataSource, String sql) {
+        return new JdbcTemplate(dataSource).queryForObject(sql, Integer.class);
+    }
+}
@@ -1,19 +1,35 @@
 package com.jjcdutra2015.libraryapi.model.repository;
 
 import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.repository.BookExampleRepository;
 import com.jjcdutra2015.libraryapi.model.entity.repository.BookRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
@@ -78,6 +94,17 @@ public class BookRepositoryTest {
         assertThat(book.getId()).isNotNull();
     }
 
+    @Test
+    @DisplayName("Nao deve salvar dois livros com o mesmo isbn")
+    public void uniqueIsbnTest() {
+        entityManager.persist(Book.builder().title("aventuras").author("Fulano").isbn("123").build());
+
+        Throwable exception = catchThrowable(() ->
+                repository.saveAndFlush(Book.builder().title("outras").author("Beltrano").isbn("123").build()));
+
+        assertThat(exception).isInstanceOf(DataIntegrityViolationException.class);
+    }
+
     @Test
     @DisplayName("Deve deletar um livro")
     public void deleteBookTest() {
@@ -89,4 +116,127 @@ public class BookRepositoryTest {
 
         assertThat(entityManager.find(Book.class, book.getId())).isNull();
     }
+
+    @Test
+    @DisplayName("Deve buscar livros a partir do ultimo id sem contar o total")
+    public void findAfterTest() {
+        Book first = Book.builder().title("Aventuras").author("Fulano").isbn("1").build();
+        Book second = Book.builder().title("Outras aventuras").author("Fulano").isbn("2").build();
+        Book third = Book.builder().title("Mais aventuras").author("Fulano").isbn("3").build();
+        Book other = Book.builder().title("Romance").author("Beltrano").isbn("4").build();
+        entityManager.persist(first);
+        entityManager.persist(second);
+        entityManager.persist(third);
+        entityManager.persist(other);
+
+        Slice<Book> firstSlice = repository.findAfter(0L, "AVENTURAS", null, null, PageRequest.of(0, 2));
+        Slice<Book> secondSlice = repository.findAfter(second.getId(), "AVENTURAS", null, null, PageRequest.of(0, 2));
+
+        assertThat(firstSlice.getContent()).containsExactly(first, second);
+        assertThat(firstSlice.hasNext()).isTrue();
+        assertThat(secondSlice.getContent()).containsExactly(third);
+        assertThat(secondSlice.hasNext()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve filtrar livros por exemplo sem consulta de contagem")
+    public void findSliceTest() {
+        Book first = entityManager.persist(Book.builder().title("Aventuras").author("Fulano").isbn("1").build());
+        Book second = entityManager.persist(Book.builder().title("Outras aventuras").author("Fulano").isbn("2").build());
+        Book third = entityManager.persist(Book.builder().title("Mais aventuras").author("Fulano").isbn("3").build());
+        entityManager.persist(Book.builder().title("Romance").author("Beltrano").isbn("4").build());
+        Example<Book> example = Example.of(Book.builder().author("fulano").build(), ExampleMatcher.matching()
+                .withIgnoreCase()
+                .withIgnoreNullValues()
+                .withIgnorePaths("available"));
+        entityManager.flush();
+
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        Slice<Book> firstSlice = repository.findSlice(example, PageRequest.of(0, 2, Sort.by("id")));
+        Slice<Book> secondSlice = repository.findSlice(example, PageRequest.of(1, 2, Sort.by("id")));
+
+        assertThat(firstSlice.getContent()).containsExactly(first, second);
+        assertThat(firstSlice.hasNext()).isTrue();
+        assertThat(secondSlice.getContent()).containsExactly(third);
+        assertThat(secondSlice.hasNext()).isFalse();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve paginar apenas os livros disponiveis")
+    public void findByAvailableTrueTest() {
+        Book available = Book.builder().title("aventuras").author("Fulano").isbn("1").build();
+        Book loaned = Book.builder().title("outras").author("Fulano").isbn("2").available(false).build();
+        entityManager.persist(available);
+        entityManager.persist(loaned);
+
+        Page<Book> result = repository.findByAvailableTrue(PageRequest.of(0, 10));
+
+        assertThat(result.getTotalElements()).isEqualTo(1);
+        assertThat(result.getContent()).containsExactly(available);
+    }
+
+    @Test
+    @DisplayName("Deve percorrer os livros filtrados em ordem de id")
+    public void streamTest() {
+        Book first = Book.builder().title("As aventuras").author("Fulano").isbn("1").build();
+        Book other = Book.builder().title("Romance").author("Beltrano").isbn("2").build();
+        Book second = Book.builder().title("Mais aventuras").author("Fulano").isbn("3").build();
+        entityManager.persist(first);
+        entityManager.persist(other);
+        entityManager.persist(second);
+
+        List<Book> filtered;
+        try (Stream<Book> books = repository.stream(BookExampleRepository.filter(Book.builder().title("AVENTURAS").build()))) {
+            filtered = books.collect(Collectors.toList());
+        }
+        long all;
+        try (Stream<Book> books = repository.stream(BookExampleRepository.filter(new Book()))) {
+            all = books.count();
+        }
+
+        assertThat(filtered).containsExactly(first, second);
+        assertThat(all).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Deve incrementar a versao e recusar atualizacao de uma copia desatualizada")
+    public void versionTest() {
+        Book book = entityManager.persistFlushFind(Book.builder().title("aventuras").author("Fulano").isbn("123").build());
+        assertThat(book.getVersion()).isEqualTo(0);
+        assertThat(book.getUpdatedAt()).isNotNull();
+
+        Book stale = Book.builder().id(book.getId()).title("outro").author("Fulano").isbn("123")
+                .version(book.getVersion()).updatedAt(book.getUpdatedAt()).build();
+        book.setTitle("novo titulo");
+        entityManager.flush();
+        assertThat(book.getVersion()).isEqualTo(1);
+        entityManager.clear();
+
+        Throwable exception = catchThrowable(() -> repository.saveAndFlush(stale));
+
+        assertThat(exception).isInstanceOf(ObjectOptimisticLockingFailureException.class);
+    }
+
+    @Test
+    @DisplayName("Deve inserir livros em lote reservando ids da sequencia em blocos")
+    public void batchInsertTest() {
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<Book> books = IntStream.range(0, 30)
+                .mapToObj(i -> Book.builder().title("Livro " + i).author("Fulano").isbn("isbn-" + i).build())
+                .collect(Collectors.toList());
+        repository.saveAll(books);
+        repository.flush();
+
+        assertThat(books).extracting(Book::getId).doesNotContainNull().doesNotHaveDuplicates();
+        // One batched insert, plus at most one sequence call for the whole block of ids
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(30);
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(2);
+    }
 }
@@ -0,0 +1,50 @@
+package com.jjcdutra2015.libraryapi.model.repository;
+
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.repository.BookRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest(properties = "library.ids.allocation-size=10")
+public class IdAllocationTest {
+
+    @Autowired
+    BookRepository repository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("Deve usar o mesmo tamanho de bloco no gerador de ids e no incremento das sequencias")
+    public void allocationSizeTest() {
+        List<Long> increments = jdbcTemplate.queryForList("select increment from information_schema.sequences "
+                + "where sequence_name in ('BOOK_SEQ', 'LOAN_SEQ')", Long.class);
+
+        List<Book> books = IntStream.range(0, 25)
+                .mapToObj(i -> Book.builder().title("Livro " + i).author("Fulano").isbn("isbn-" + i).build())
+                .collect(Collectors.toList());
+        repository.saveAll(books);
+        repository.flush();
+
+        assertThat(increments).containsExactly(10L, 10L);
+        assertThat(books).extracting(Book::getId).doesNotContainNull().doesNotHaveDuplicates();
+        // Three blocks of ten taken back to back
+        LongSummaryStatistics ids = books.stream().mapToLong(Book::getId).summaryStatistics();
+        assertThat(ids.getMax() - ids.getMin()).isEqualTo(24);
+    }
+}
@@ -1,22 +1,29 @@
 package com.jjcdutra2015.libraryapi.model.repository;
 
+import com.jjcdutra2015.libraryapi.exception.BusinessException;
 import com.jjcdutra2015.libraryapi.model.entity.Book;
 import com.jjcdutra2015.libraryapi.model.entity.Loan;
 import com.jjcdutra2015.libraryapi.model.entity.repository.LoanRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.time.LocalDate;
 
-import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.catchThrowable;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
@@ -42,16 +49,187 @@ public class LoanRepositoryTest {
 
     @Test
     @DisplayName("Deve buscar emprestimo pelo isbn do livro ou customer")
-    public void findByBookIsbnOrCustomerTest() {
+    public void searchTest() {
         Loan loan = createAndPersistLoan();
 
-        Page<Loan> result = repository.findByBookIsbnOrCustomer("123", "Cicrano", PageRequest.of(0, 10));
+        Page<Loan> result = repository.search("123", "Cicrano", PageRequest.of(0, 10));
 
         assertThat(result.getTotalElements()).isEqualTo(1);
         assertThat(result.getPageable().getPageSize()).isEqualTo(10);
         assertThat(result.getPageable().getPageNumber()).isEqualTo(0);
     }
 
+    @Test
+    @DisplayName("Deve buscar uma pagina de emprestimos com os livros sem consultas extras")
+    public void searchFetchesBookTest() {
+        for (int i = 0; i < 20; i++) {
+            Book book = Book.builder().title("As aventuras " + i).author("Fulano").isbn("isbn-" + i).build();
+            entityManager.persist(book);
+            entityManager.persist(Loan.builder().customer("Cicrano").book(book).loanDate(LocalDate.now()).build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        Page<Loan> result = repository.search(null, "Cicrano", PageRequest.of(0, 10));
+        result.getContent().forEach(loan -> loan.getBook().getTitle());
+
+        assertThat(result.getContent().size()).isEqualTo(10);
+        assertThat(result.getTotalElements()).isEqualTo(20);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve ignorar os filtros ausentes na busca de emprestimos")
+    public void searchIgnoresMissingFiltersTest() {
+        Loan loan = createAndPersistLoan();
+        Book other = entityManager.persist(Book.builder().title("Outro").author("Fulano").isbn("456").build());
+        entityManager.persist(Loan.builder().customer("Fulano").book(other).loanDate(LocalDate.now()).build());
+
+        assertThat(repository.search("123", null, PageRequest.of(0, 10)).getContent()).containsExactly(loan);
+        assertThat(repository.search(null, "Cicrano", PageRequest.of(0, 10)).getContent()).containsExactly(loan);
+        assertThat(repository.search("", null, PageRequest.of(0, 10)).getTotalElements()).isEqualTo(2);
+        assertThat(repository.search(null, null, PageRequest.of(0, 10)).getTotalElements()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve unir os emprestimos do isbn e do customer sem repetir e em ordem de id")
+    public void searchUnionTest() {
+        Book book = entityManager.persist(Book.builder().title("As aventuras").author("Fulano").isbn("123").build());
+        Book other = entityManager.persist(Book.builder().title("Outro").author("Fulano").isbn("456").build());
+        Loan byBoth = entityManager.persist(Loan.builder().customer("Cicrano").book(book).loanDate(LocalDate.now()).returned(true).build());
+        Loan byIsbn = entityManager.persist(Loan.builder().customer("Fulano").book(book).loanDate(LocalDate.now()).build());
+        Loan byCustomer = entityManager.persist(Loan.builder().customer("Cicrano").book(other).loanDate(LocalDate.now()).build());
+        entityManager.persist(Loan.builder().customer("Beltrano").book(other).loanDate(LocalDate.now()).returned(true).build());
+        entityManager.flush();
+        entityManager.clear();
+
+        Page<Loan> firstPage = repository.search("123", "Cicrano", PageRequest.of(0, 2));
+        Page<Loan> secondPage = repository.search("123", "Cicrano", PageRequest.of(1, 2));
+        Slice<Loan> slice = repository.searchAfter(byBoth.getId(), "123", "Cicrano", PageRequest.of(0, 10));
+
+        assertThat(firstPage.getContent()).extracting(Loan::getId).containsExactly(byBoth.getId(), byIsbn.getId());
+        assertThat(firstPage.getTotalElements()).isEqualTo(3);
+        assertThat(secondPage.getContent()).extracting(Loan::getId).containsExactly(byCustomer.getId());
+        assertThat(secondPage.getContent().get(0).getBook().getIsbn()).isEqualTo("456");
+        assertThat(slice.getContent()).extracting(Loan::getId).containsExactly(byIsbn.getId(), byCustomer.getId());
+        assertThat(slice.hasNext()).isFalse();
+        Slice<Loan> firstSlice = repository.searchSlice("123", "Cicrano", PageRequest.of(0, 2));
+        Slice<Loan> lastSlice = repository.searchSlice("123", "Cicrano", PageRequest.of(1, 2));
+        assertThat(firstSlice.getContent()).extracting(Loan::getId).containsExactly(byBoth.getId(), byIsbn.getId());
+        assertThat(firstSlice.hasNext()).isTrue();
+        assertThat(lastSlice.getContent()).extracting(Loan::getId).containsExactly(byCustomer.getId());
+        assertThat(lastSlice.hasNext()).isFalse();
+        assertThat(repository.countSearch("123", "Cicrano")).isEqualTo(3);
+        assertThat(repository.countSearch("123", null)).isEqualTo(2);
+        assertThat(repository.countSearch(null, "Cicrano")).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve ordenar a busca de emprestimos pela ordenacao pedida, desempatando pelo id")
+    public void searchSortTest() {
+        Book book = entityManager.persist(Book.builder().title("As aventuras").author("Fulano").isbn("123").build());
+        Book other = entityManager.persist(Book.builder().title("Outro").author("Fulano").isbn("456").build());
+        Loan oldest = entityManager.persist(Loan.builder().customer("Cicrano").book(book).loanDate(LocalDate.now().minusDays(9)).returned(true).build());
+        Loan newest = entityManager.persist(Loan.builder().customer("Fulano").book(book).loanDate(LocalDate.now()).build());
+        Loan middle = entityManager.persist(Loan.builder().customer("Cicrano").book(other).loanDate(LocalDate.now().minusDays(5)).build());
+        Loan tie = entityManager.persist(Loan.builder().customer("Cicrano").book(other).loanDate(LocalDate.now().minusDays(5)).returned(true).build());
+        entityManager.flush();
+        entityManager.clear();
+        Sort byLoanDate = Sort.by(Sort.Direction.DESC, "loanDate");
+
+        Page<Loan> union = repository.search("123", "Cicrano", PageRequest.of(0, 3, byLoanDate));
+        Slice<Loan> unionRest = repository.searchSlice("123", "Cicrano", PageRequest.of(1, 3, byLoanDate));
+        Page<Loan> byCustomer = repository.search(null, "Cicrano", PageRequest.of(0, 10, byLoanDate));
+
+        assertThat(union.getContent()).extracting(Loan::getId).containsExactly(newest.getId(), middle.getId(), tie.getId());
+        assertThat(unionRest.getContent()).extracting(Loan::getId).containsExactly(oldest.getId());
+        assertThat(byCustomer.getContent()).extracting(Loan::getId).containsExactly(middle.getId(), tie.getId(), oldest.getId());
+        Sort byCustomerThenReturned = Sort.by("customer", "returned").and(Sort.by(Sort.Direction.DESC, "id"));
+        assertThat(repository.search(null, null, PageRequest.of(0, 10, byCustomerThenReturned)).getContent())
+                .extracting(Loan::getId).containsExactly(middle.getId(), tie.getId(), oldest.getId(), newest.getId());
+    }
+
+    @Test
+    @DisplayName("Deve recusar a ordenacao da busca de emprestimos por propriedade nao suportada")
+    public void searchUnsupportedSortTest() {
+        Throwable exception = catchThrowable(() -> repository.search(null, "Cicrano", PageRequest.of(0, 10, Sort.by("book"))));
+
+        assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Loans cannot be sorted by book");
+    }
+
+    @Test
+    @DisplayName("Deve dispensar a contagem quando a primeira pagina nao esta cheia")
+    public void searchSkipsCountTest() {
+        createAndPersistLoan();
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        Page<Loan> result = repository.search(null, "Cicrano", PageRequest.of(0, 10));
+
+        assertThat(result.getTotalElements()).isEqualTo(1);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve buscar emprestimos a partir do ultimo id sem consulta de contagem")
+    public void searchAfterTest() {
+        for (int i = 0; i < 5; i++) {
+            Book book = Book.builder().title("As aventuras " + i).author("Fulano").isbn("isbn-" + i).build();
+            entityManager.persist(book);
+            entityManager.persist(Loan.builder().customer("Cicrano").book(book).loanDate(LocalDate.now()).build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+
+        Slice<Loan> firstSlice = repository.searchAfter(0L, null, "Cicrano", PageRequest.of(0, 3));
+        Long lastId = firstSlice.getContent().get(2).getId();
+        statistics.clear();
+        Slice<Loan> secondSlice = repository.searchAfter(lastId, null, "Cicrano", PageRequest.of(0, 3));
+        secondSlice.getContent().forEach(loan -> loan.getBook().getTitle());
+
+        assertThat(firstSlice.hasNext()).isTrue();
+        assertThat(secondSlice.getContent().size()).isEqualTo(2);
+        assertThat(secondSlice.hasNext()).isFalse();
+        assertThat(secondSlice.getContent().get(0).getId()).isGreaterThan(lastId);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Nao deve permitir dois emprestimos ativos para o mesmo livro")
+    public void singleActiveLoanPerBookTest() {
+        Loan loan = createAndPersistLoan();
+
+        Throwable exception = catchThrowable(() -> repository.saveAndFlush(
+                Loan.builder().customer("Beltrano").book(loan.getBook()).loanDate(LocalDate.now()).build()));
+
+        assertThat(exception).isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    @DisplayName("Deve permitir novo emprestimo depois que o livro for devolvido")
+    public void loanAfterReturnTest() {
+        Loan loan = createAndPersistLoan();
+        loan.setReturned(true);
+        repository.saveAndFlush(loan);
+
+        Loan newLoan = repository.saveAndFlush(
+                Loan.builder().customer("Beltrano").book(loan.getBook()).loanDate(LocalDate.now()).build());
+
+        assertThat(loan.getActiveBookId()).isNull();
+        assertThat(newLoan.getActiveBookId()).isEqualTo(loan.getBook().getId());
+    }
+
     private Loan createAndPersistLoan() {
         Book book = Book.builder().title("As aventuras").author("Fulano").isbn("123").build();
         entityManager.persist(book);
@@ -0,0 +1,143 @@
+package com.jjcdutra2015.libraryapi.model.repository;
+
+import com.jjcdutra2015.libraryapi.api.metrics.SqlStatementCounter;
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.repository.ArchivedLoanRepository;
+import com.jjcdutra2015.libraryapi.model.entity.repository.BookRepository;
+import com.jjcdutra2015.libraryapi.model.entity.repository.JobCheckpointRepository;
+import com.jjcdutra2015.libraryapi.model.entity.repository.LoanRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs EXPLAIN on the SQL behind every repository query and fails on a full table scan. Not checked:
+ * the exports and an unfiltered loan search, which read whole tables by design.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class QueryPlanTest {
+
+    static final String TABLE_SCAN = ".tableScan";
+
+    @SpyBean
+    SqlStatementCounter statements;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    ArchivedLoanRepository archivedLoanRepository;
+
+    @Autowired
+    JobCheckpointRepository checkpointRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    Book book;
+
+    @BeforeEach
+    public void setup() {
+        book = bookRepository.save(Book.builder().title("As aventuras").author("Fulano").isbn("001").build());
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        loanRepository.deleteAll();
+        bookRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Deve usar indices nas consultas de livros")
+    public void bookQueriesUseIndexesTest() {
+        assertIndexed("findById", () -> bookRepository.findById(book.getId()));
+        assertIndexed("existsByIsbn", () -> bookRepository.existsByIsbn("001"));
+        assertIndexed("findByIsbn", () -> bookRepository.findByIsbn("001"));
+        assertIndexed("findByIsbnIn", () -> bookRepository.findByIsbnIn(Arrays.asList("001", "002")));
+        assertIndexed("findIsbnsIn", () -> bookRepository.findIsbnsIn(Arrays.asList("001", "002")));
+        assertIndexed("findByAvailableTrue", () -> bookRepository.findByAvailableTrue(PageRequest.of(1, 10)));
+        assertIndexed("findAfter", () -> bookRepository.findAfter(0L, null, null, null, PageRequest.of(0, 10)));
+    }
+
+    @Test
+    @DisplayName("Deve usar indices nas consultas de emprestimos")
+    public void loanQueriesUseIndexesTest() {
+        LocalDate today = LocalDate.now();
+        assertIndexed("existsByBookAndNotReturned", () -> loanRepository.existsByBookAndNotReturned(book));
+        assertIndexed("search by isbn", () -> loanRepository.search("001", null, PageRequest.of(0, 10)));
+        assertIndexed("search by customer", () -> loanRepository.search(null, "Fulano", PageRequest.of(0, 10)));
+        assertIndexed("search by isbn or customer",
+                () -> loanRepository.search("001", "Fulano", PageRequest.of(0, 10)));
+        assertIndexed("searchSlice by customer",
+                () -> loanRepository.searchSlice(null, "Fulano", PageRequest.of(0, 10)));
+        assertIndexed("searchAfter by isbn or customer",
+                () -> loanRepository.searchAfter(0L, "001", "Fulano", PageRequest.of(0, 10)));
+        assertIndexed("countSearch by isbn", () -> loanRepository.countSearch("001", null));
+        assertIndexed("countSearch by customer", () -> loanRepository.countSearch(null, "Fulano"));
+        assertIndexed("countSearch by isbn or customer", () -> loanRepository.countSearch("001", "Fulano"));
+        assertIndexed("findWithBookByIdIn", () -> loanRepository.findWithBookByIdIn(Arrays.asList(1L, 2L)));
+        assertIndexed("findOverdueAfter",
+                () -> loanRepository.findOverdueAfter(today, today.minusYears(1), 0L, PageRequest.of(0, 10)));
+        assertIndexed("checkpoint findById", () -> checkpointRepository.findById("overdue-loan-scan"));
+        assertIndexed("findArchivableIds", () -> loanRepository.findArchivableIds(today, PageRequest.of(0, 10)));
+    }
+
+    @Test
+    @DisplayName("Deve usar indices nas consultas do arquivo de emprestimos")
+    public void archivedLoanQueriesUseIndexesTest() {
+        assertIndexed("archive findFirst by isbn", () -> archivedLoanRepository.findFirst("001", null, null, 10));
+        assertIndexed("archive findFirst by customer", () -> archivedLoanRepository.findFirst(null, "Fulano", 0L, 10));
+        assertIndexed("archive findFirst by isbn or customer",
+                () -> archivedLoanRepository.findFirst("001", "Fulano", null, 10));
+        assertIndexed("archive countSearch by isbn or customer", () -> archivedLoanRepository.countSearch("001", "Fulano"));
+    }
+
+    private void assertIndexed(String query, Runnable execution) {
+        // Cached results would skip the database and leave nothing to explain
+        entityManagerFactory.getCache().evictAll();
+        Mockito.clearInvocations(statements);
+
+        execution.run();
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        Mockito.verify(statements, Mockito.atLeastOnce()).inspect(sql.capture());
+        for (String statement : sql.getAllValues()) {
+            String plan = explain(statement);
+            assertThat(plan).as("%s scans a whole table:%n%s", query, plan).doesNotContain(TABLE_SCAN);
+        }
+    }
+
+    private String explain(String sql) {
+        List<String> plan = jdbcTemplate.query("explain " + sql, ps -> {
+            int parameters = ps.getParameterMetaData().getParameterCount();
+            for (int i = 1; i <= parameters; i++) {
+                ps.setObject(i, null);
+            }
+        }, (ResultSet rs, int row) -> rs.getString(1));
+        return String.join("\n", plan);
+    }
+}
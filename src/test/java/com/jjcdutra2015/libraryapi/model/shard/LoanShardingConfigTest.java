@@ -0,0 +1,59 @@
+package com.jjcdutra2015.libraryapi.model.shard;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class LoanShardingConfigTest {
+
+    JdbcTemplate main;
+    JdbcTemplate shard;
+
+    @BeforeEach
+    public void setUp() {
+        DataSource mainDataSource = new DriverManagerDataSource("jdbc:h2:mem:sharding-config-main;DB_CLOSE_DELAY=-1");
+        DataSource shardDataSource = new DriverManagerDataSource("jdbc:h2:mem:sharding-config-shard;DB_CLOSE_DELAY=-1");
+        Flyway.configure().dataSource(mainDataSource).cleanDisabled(false).load().clean();
+        Flyway.configure().dataSource(mainDataSource).placeholders(Map.of("allocation_size", "50")).load().migrate();
+        Flyway.configure().dataSource(shardDataSource).locations("classpath:db/shard").cleanDisabled(false).load().clean();
+        Flyway.configure().dataSource(shardDataSource).locations("classpath:db/shard").load().migrate();
+        main = new JdbcTemplate(mainDataSource);
+        shard = new JdbcTemplate(shardDataSource);
+    }
+
+    @Test
+    @DisplayName("Deve recusar os shards enquanto houver emprestimos na base principal")
+    public void refusesMainLoansTest() {
+        LoanShardingConfig.checkNoMainLoans(main);
+
+        main.update("insert into book (id, title, author, isbn, available, version, updated_at) "
+                + "values (1, 'Livro', 'Fulano', '001', false, 0, current_timestamp)");
+        main.update("insert into loan (id, customer, id_book, loan_date, returned, active_book_id) "
+                + "values (1, 'Fulano', 1, current_date, false, 1)");
+
+        Throwable exception = catchThrowable(() -> LoanShardingConfig.checkNoMainLoans(main));
+
+        assertThat(exception).isInstanceOf(IllegalStateException.class).hasMessageStartingWith("1 loans are still");
+    }
+
+    @Test
+    @DisplayName("Deve avancar a sequencia do shard alem dos ids ja arquivados")
+    public void skipsArchivedIdsTest() {
+        LoanShardingConfig.skipArchivedIds(shard, 100, 3);
+
+        long next = shard.queryForObject("select nextval('loan_seq')", Long.class);
+        assertThat(next * 3).isGreaterThan(100);
+
+        LoanShardingConfig.skipArchivedIds(shard, 0, 3);
+        assertThat(shard.queryForObject("select nextval('loan_seq')", Long.class)).isGreaterThan(next);
+    }
+}
@@ -0,0 +1,389 @@
+package com.jjcdutra2015.libraryapi.model.shard;
+
+import com.jjcdutra2015.libraryapi.api.dto.LoanBatchResultDTO;
+import com.jjcdutra2015.libraryapi.api.dto.LoanFilterDTO;
+import com.jjcdutra2015.libraryapi.api.dto.LoanReturnDTO;
+import com.jjcdutra2015.libraryapi.api.dto.LoandDTO;
+import com.jjcdutra2015.libraryapi.exception.BusinessException;
+import com.jjcdutra2015.libraryapi.exception.ConstraintViolations;
+import com.jjcdutra2015.libraryapi.model.entity.ArchivedLoan;
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.Loan;
+import com.jjcdutra2015.libraryapi.model.entity.repository.ArchivedLoanRepository;
+import com.jjcdutra2015.libraryapi.model.entity.repository.BookRepository;
+import com.jjcdutra2015.libraryapi.model.entity.repository.LoanRepository;
+import com.jjcdutra2015.libraryapi.service.ExportService;
+import com.jjcdutra2015.libraryapi.service.LoanArchiveService;
+import com.jjcdutra2015.libraryapi.service.LoanBatchService;
+import com.jjcdutra2015.libraryapi.service.LoanService;
+import com.jjcdutra2015.libraryapi.service.OverdueLoanService;
+import com.jjcdutra2015.libraryapi.service.cache.BookIsbnCache;
+import com.jjcdutra2015.libraryapi.service.cache.CountCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+@SpringBootTest(properties = "library.loans.shards.urls=" + ShardedLoanRepositoryTest.SHARD_0 + ","
+        + ShardedLoanRepositoryTest.SHARD_1 + "," + ShardedLoanRepositoryTest.SHARD_2)
+@ActiveProfiles("test")
+public class ShardedLoanRepositoryTest {
+
+    static final String SHARD_0 = "jdbc:h2:mem:loan-shard-0;DB_CLOSE_DELAY=-1";
+    static final String SHARD_1 = "jdbc:h2:mem:loan-shard-1;DB_CLOSE_DELAY=-1";
+    static final String SHARD_2 = "jdbc:h2:mem:loan-shard-2;MODE=PostgreSQL;DB_CLOSE_DELAY=-1";
+    static final String[] SHARDS = {SHARD_0, SHARD_1, SHARD_2};
+
+    @Autowired
+    ShardedLoanRepository repository;
+
+    @Autowired
+    LoanShardRouter router;
+
+    @Autowired
+    LoanService loanService;
+
+    @Autowired
+    LoanBatchService batchService;
+
+    @Autowired
+    OverdueLoanService overdueService;
+
+    @Autowired
+    ExportService exportService;
+
+    @Autowired
+    LoanArchiveService archiveService;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    ArchivedLoanRepository archivedLoanRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    BookIsbnCache isbnCache;
+
+    @Autowired
+    CountCache countCache;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    public void cleanUp() {
+        for (String url : SHARDS) {
+            shard(url).update("delete from loan");
+        }
+        archivedLoanRepository.deleteAll();
+        bookRepository.deleteAll();
+        isbnCache.clear();
+        countCache.clear();
+    }
+
+    @Test
+    @DisplayName("Deve gravar cada emprestimo no shard do livro e nao na base principal")
+    public void placesLoansByBookTest() {
+        List<Loan> loans = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            Book book = bookRepository.save(book(i));
+            loans.add(loanService.save(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build()));
+        }
+
+        for (Loan loan : loans) {
+            int shard = router.shardOf(loan.getBook().getId(), SHARDS.length);
+            assertThat(shard(SHARDS[shard]).queryForObject("select count(*) from loan where id = ?", Long.class, loan.getId()))
+                    .isEqualTo(1L);
+            assertThat(loanService.getById(loan.getId())).hasValueSatisfying(found -> {
+                assertThat(found.getBook().getIsbn()).isEqualTo(loan.getBook().getIsbn());
+                assertThat(found.getReturned()).isFalse();
+            });
+        }
+        assertThat(loans.stream().map(loan -> Math.floorMod(loan.getId(), SHARDS.length)).distinct()).hasSize(SHARDS.length);
+        assertThat(loanRepository.count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve recusar um segundo emprestimo ativo do livro no proprio shard")
+    public void activeLoanCheckTest() {
+        Book book = bookRepository.save(book(1));
+        repository.saveAndFlush(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build());
+
+        Throwable exception = catchThrowable(() ->
+                repository.saveAndFlush(Loan.builder().book(book).customer("Ciclano").loanDate(LocalDate.now()).build()));
+
+        assertThat(exception).isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(ConstraintViolations.isViolationOf((DataIntegrityViolationException) exception, Loan.ACTIVE_BOOK_CONSTRAINT)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve liberar o livro e aceitar um novo emprestimo depois da devolucao")
+    public void returnLoanTest() {
+        Book book = bookRepository.save(book(1));
+        Loan loan = loanService.save(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build());
+
+        loan.setReturned(true);
+        loanService.update(loan);
+        Loan second = loanService.save(Loan.builder().book(book).customer("Ciclano").loanDate(LocalDate.now()).build());
+
+        assertThat(loanService.getById(loan.getId())).hasValueSatisfying(found -> assertThat(found.getReturned()).isTrue());
+        assertThat(bookRepository.findById(book.getId())).hasValueSatisfying(found -> assertThat(found.getAvailable()).isFalse());
+        Throwable exception = catchThrowable(() ->
+                loanService.save(Loan.builder().book(book).customer("Beltrano").loanDate(LocalDate.now()).build()));
+        assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Book already loaned");
+        assertThat(second.getId()).isNotEqualTo(loan.getId());
+    }
+
+    @Test
+    @DisplayName("Deve paginar a busca por cliente juntando os shards em ordem de id")
+    public void scatterGatherCustomerSearchTest() {
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Book book = bookRepository.save(book(i));
+            Loan loan = repository.saveAndFlush(Loan.builder().book(book).customer(i % 2 == 0 ? "Fulano" : "Ciclano")
+                    .loanDate(LocalDate.now()).build());
+            if (i % 2 == 0) {
+                expected.add(loan.getId());
+            }
+        }
+        expected.sort(Long::compare);
+
+        List<Long> paged = new ArrayList<>();
+        for (int page = 0; page < 3; page++) {
+            Page<Loan> result = repository.search(null, "Fulano", PageRequest.of(page, 2));
+            assertThat(result.getTotalElements()).isEqualTo(5);
+            result.getContent().forEach(loan -> assertThat(loan.getBook().getTitle()).isNotNull());
+            paged.addAll(ids(result.getContent()));
+        }
+        assertThat(paged).containsExactlyElementsOf(expected);
+
+        List<Long> keyset = new ArrayList<>();
+        Slice<Loan> slice = repository.searchAfter(0L, null, "Fulano", PageRequest.of(0, 2));
+        keyset.addAll(ids(slice.getContent()));
+        while (slice.hasNext()) {
+            slice = repository.searchAfter(keyset.get(keyset.size() - 1), null, "Fulano", PageRequest.of(0, 2));
+            keyset.addAll(ids(slice.getContent()));
+        }
+        assertThat(keyset).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    @DisplayName("Deve paginar a busca juntando os shards na ordenacao pedida")
+    public void scatterGatherSortedSearchTest() {
+        List<Loan> loans = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            Book book = bookRepository.save(book(i));
+            loans.add(repository.saveAndFlush(Loan.builder().book(book).customer("Fulano")
+                    .loanDate(LocalDate.now().minusDays(i % 3)).build()));
+        }
+        List<Long> expected = loans.stream()
+                .sorted(Comparator.comparing(Loan::getLoanDate).thenComparing(Loan::getId, Comparator.reverseOrder()))
+                .map(Loan::getId)
+                .collect(Collectors.toList());
+        Sort sort = Sort.by("loanDate").and(Sort.by(Sort.Direction.DESC, "id"));
+
+        List<Long> paged = new ArrayList<>();
+        for (int page = 0; page < 3; page++) {
+            paged.addAll(ids(repository.search(null, "Fulano", PageRequest.of(page, 2, sort)).getContent()));
+        }
+        assertThat(paged).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    @DisplayName("Deve buscar pelo isbn no shard do livro e unir com a busca por cliente")
+    public void isbnSearchTest() {
+        Book first = bookRepository.save(book(1));
+        Book second = bookRepository.save(book(2));
+        Loan byIsbn = repository.saveAndFlush(Loan.builder().book(first).customer("Ciclano").loanDate(LocalDate.now()).build());
+        Loan byCustomer = repository.saveAndFlush(Loan.builder().book(second).customer("Fulano").loanDate(LocalDate.now()).build());
+
+        assertThat(ids(repository.search("1", null, PageRequest.of(0, 10)).getContent())).containsExactly(byIsbn.getId());
+        assertThat(ids(repository.search("1", "Fulano", PageRequest.of(0, 10)).getContent()))
+                .containsExactlyInAnyOrder(byIsbn.getId(), byCustomer.getId());
+        assertThat(repository.countSearch("1", "Fulano")).isEqualTo(2);
+        assertThat(repository.search("999", null, PageRequest.of(0, 10)).getContent()).isEmpty();
+
+        Page<Loan> all = loanService.find(new LoanFilterDTO(), PageRequest.of(0, 10));
+        assertThat(all.getTotalElements()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve desfazer a gravacao no shard quando a transacao principal falhar")
+    public void rollbackRemovesInsertTest() {
+        Book book = bookRepository.save(book(1));
+
+        catchThrowable(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            repository.saveAndFlush(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build());
+            throw new IllegalStateException();
+        }));
+
+        assertThat(repository.countSearch(null, null)).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve restaurar no shard o emprestimo atualizado quando a transacao principal falhar")
+    public void rollbackRestoresUpdateTest() {
+        Book book = bookRepository.save(book(1));
+        Loan loan = repository.saveAndFlush(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build());
+
+        catchThrowable(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            loan.setReturned(true);
+            loan.setCustomer("Ciclano");
+            repository.saveAndFlush(loan);
+            throw new IllegalStateException();
+        }));
+
+        assertThat(repository.findById(loan.getId())).hasValueSatisfying(found -> {
+            assertThat(found.getReturned()).isFalse();
+            assertThat(found.getCustomer()).isEqualTo("Fulano");
+            assertThat(found.getActiveBookId()).isEqualTo(book.getId());
+        });
+    }
+
+    @Test
+    @DisplayName("Deve desfazer na ordem inversa varias atualizacoes do mesmo emprestimo")
+    public void rollbackRestoresRepeatedUpdatesTest() {
+        Book book = bookRepository.save(book(1));
+        Loan loan = repository.saveAndFlush(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build());
+
+        catchThrowable(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            loan.setCustomer("Ciclano");
+            repository.saveAndFlush(loan);
+            loan.setReturned(true);
+            repository.saveAndFlush(loan);
+            throw new IllegalStateException();
+        }));
+
+        assertThat(repository.findById(loan.getId())).hasValueSatisfying(found -> {
+            assertThat(found.getReturned()).isFalse();
+            assertThat(found.getCustomer()).isEqualTo("Fulano");
+        });
+    }
+
+    @Test
+    @DisplayName("Nao deve sobrescrever uma alteracao concorrente ao desfazer a atualizacao")
+    public void rollbackKeepsConcurrentUpdateTest() {
+        Book book = bookRepository.save(book(1));
+        Loan loan = repository.saveAndFlush(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build());
+        JdbcTemplate shard = shard(SHARDS[Math.floorMod(loan.getId(), SHARDS.length)]);
+
+        catchThrowable(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            loan.setReturned(true);
+            repository.saveAndFlush(loan);
+            shard.update("update loan set customer = 'Beltrano', version = version + 1 where id = ?", loan.getId());
+            throw new IllegalStateException();
+        }));
+
+        assertThat(repository.findById(loan.getId())).hasValueSatisfying(found -> {
+            assertThat(found.getCustomer()).isEqualTo("Beltrano");
+            assertThat(found.getReturned()).isTrue();
+        });
+    }
+
+    @Test
+    @DisplayName("Deve emprestar e devolver em lote nos shards")
+    public void batchTest() {
+        for (int i = 0; i < 3; i++) {
+            bookRepository.save(book(i));
+        }
+
+        LoanBatchResultDTO checkout = batchService.checkout(Arrays.asList(
+                LoandDTO.builder().isbn("0").customer("Fulano").build(),
+                LoandDTO.builder().isbn("1").customer("Fulano").build(),
+                LoandDTO.builder().isbn("2").customer("Fulano").build()));
+        Long first = checkout.getItems().get(0).getId();
+        LoanBatchResultDTO returns = batchService.updateReturns(Arrays.asList(LoanReturnDTO.builder().id(first).returned(true).build()));
+
+        assertThat(checkout.getSucceeded()).isEqualTo(3);
+        assertThat(returns.getSucceeded()).isEqualTo(1);
+        assertThat(repository.countSearch(null, "Fulano")).isEqualTo(3);
+        assertThat(loanRepository.count()).isZero();
+        assertThat(repository.findById(first)).hasValueSatisfying(found -> assertThat(found.getReturned()).isTrue());
+        assertThat(bookRepository.findByIsbn("0")).hasValueSatisfying(found -> assertThat(found.getAvailable()).isTrue());
+        assertThat(bookRepository.findByIsbn("1")).hasValueSatisfying(found -> assertThat(found.getAvailable()).isFalse());
+    }
+
+    @Test
+    @DisplayName("Deve listar atrasados e exportar emprestimos juntando os shards em ordem")
+    public void overdueAndExportTest() {
+        List<Loan> loans = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            Book book = bookRepository.save(book(i));
+            loans.add(repository.saveAndFlush(Loan.builder().book(book).customer("Fulano")
+                    .loanDate(LocalDate.now().minusDays(10 + i % 2)).build()));
+        }
+        List<Long> overdue = loans.stream()
+                .sorted(Comparator.comparing(Loan::getLoanDate).thenComparing(Loan::getId))
+                .map(Loan::getId)
+                .collect(Collectors.toList());
+
+        List<Long> keyset = new ArrayList<>();
+        Slice<Loan> slice = overdueService.findOverdue(null, null, 4);
+        keyset.addAll(ids(slice.getContent()));
+        Loan last = slice.getContent().get(slice.getNumberOfElements() - 1);
+        slice = overdueService.findOverdue(last.getLoanDate(), last.getId(), 4);
+        keyset.addAll(ids(slice.getContent()));
+        assertThat(slice.hasNext()).isFalse();
+        assertThat(keyset).containsExactlyElementsOf(overdue);
+
+        List<Loan> exported = new ArrayList<>();
+        exportService.forEachLoan(LoanFilterDTO.builder().customer("Fulano").build(), exported::add);
+        assertThat(ids(exported)).containsExactlyElementsOf(ids(loans).stream().sorted().collect(Collectors.toList()));
+        exported.forEach(loan -> assertThat(loan.getBook().getTitle()).isNotNull());
+    }
+
+    @Test
+    @DisplayName("Deve arquivar na base principal os emprestimos devolvidos antigos dos shards")
+    public void archiveTest() {
+        List<Long> old = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Book book = bookRepository.save(book(i));
+            Loan loan = repository.saveAndFlush(Loan.builder().book(book).customer("Fulano").returned(i < 3)
+                    .loanDate(LocalDate.now().minusDays(500)).build());
+            if (i < 3) {
+                old.add(loan.getId());
+            }
+        }
+
+        assertThat(archiveService.archive()).isEqualTo(3);
+
+        assertThat(repository.countSearch(null, null)).isEqualTo(1);
+        assertThat(archivedLoanRepository.findAll()).extracting(ArchivedLoan::getId).containsExactlyInAnyOrderElementsOf(old);
+    }
+
+    private static Book book(int i) {
+        return Book.builder().title("Livro " + i).author("Autor").isbn(String.valueOf(i)).build();
+    }
+
+    private static List<Long> ids(List<Loan> loans) {
+        return loans.stream().map(Loan::getId).collect(Collectors.toList());
+    }
+
+    private static JdbcTemplate shard(String url) {
+        return new JdbcTemplate(new DriverManagerDataSource(url));
+    }
+}
@@ -0,0 +1,106 @@
+package com.jjcdutra2015.libraryapi.service;
+
+import com.jjcdutra2015.libraryapi.api.dto.BookImportItemDTO;
+import com.jjcdutra2015.libraryapi.api.dto.BookImportResultDTO;
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.repository.BookRepository;
+import com.jjcdutra2015.libraryapi.service.impl.BookImportServiceImpl;
+import com.jjcdutra2015.libraryapi.service.search.BookSearchIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest(properties = "library.import.chunk-size=2")
+@Import({BookImportServiceImpl.class, BookSearchIndex.class})
+public class BookImportServiceTest {
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Autowired
+    BookRepository repository;
+
+    @Autowired
+    BookImportService service;
+
+    @Autowired
+    BookSearchIndex searchIndex;
+
+    @Test
+    @DisplayName("Deve importar livros em lote ignorando isbn duplicado e registros invalidos")
+    public void importBooksTest() {
+        entityManager.persist(Book.builder().title("Existente").author("Fulano").isbn("001").build());
+
+        List<Book> books = Arrays.asList(
+                Book.builder().title("Livro 1").author("Autor").isbn("001").build(),
+                Book.builder().title("Livro 2").author("Autor").isbn("002").build(),
+                Book.builder().title("Livro 3").author("Autor").isbn("003").build(),
+                Book.builder().title("Livro 4").author("Autor").isbn("002").build(),
+                Book.builder().title("").author("Autor").isbn("005").build()
+        );
+
+        BookImportResultDTO result = service.importBooks(books.iterator());
+
+        assertThat(result.getCreated()).isEqualTo(2);
+        assertThat(result.getFailed()).isEqualTo(3);
+        assertThat(result.getItems()).extracting(BookImportItemDTO::getStatus).containsExactly(
+                BookImportItemDTO.Status.DUPLICATE,
+                BookImportItemDTO.Status.CREATED,
+                BookImportItemDTO.Status.CREATED,
+                BookImportItemDTO.Status.DUPLICATE,
+                BookImportItemDTO.Status.INVALID);
+        assertThat(result.getItems()).extracting(BookImportItemDTO::getIndex).containsExactly(0, 1, 2, 3, 4);
+
+        assertThat(repository.count()).isEqualTo(3);
+        assertThat(repository.findByIsbn("002").get().getTitle()).isEqualTo("Livro 2");
+        assertThat(repository.findByIsbn("003")).isPresent();
+        assertThat(searchIndex.search("livro", PageRequest.of(0, 10)).getTotalHits()).isEqualTo(2);
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        repository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Deve marcar como falha o livro recusado pelo banco e continuar a importacao")
+    // Runs outside the test transaction, as the import does, so each chunk commits or rolls back on its own
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void importBooksWithRejectedRowTest() {
+        List<Book> books = Arrays.asList(
+                Book.builder().title("Obra 1").author("Autor").isbn("001").build(),
+                Book.builder().title("Obra 2".repeat(50)).author("Autor").isbn("002").build(),
+                Book.builder().title("Obra 3").author("Autor").isbn("003").build()
+        );
+
+        BookImportResultDTO result = service.importBooks(books.iterator());
+
+        assertThat(result.getCreated()).isEqualTo(2);
+        assertThat(result.getFailed()).isEqualTo(1);
+        assertThat(result.getItems()).extracting(BookImportItemDTO::getStatus).containsExactly(
+                BookImportItemDTO.Status.CREATED,
+                BookImportItemDTO.Status.FAILED,
+                BookImportItemDTO.Status.CREATED);
+        assertThat(result.getItems().get(1).getMessage()).isNotBlank();
+        assertThat(repository.findByIsbn("001")).isPresent();
+        assertThat(repository.findByIsbn("002")).isEmpty();
+        assertThat(repository.findByIsbn("003")).isPresent();
+    }
+}
@@ -0,0 +1,132 @@
+package com.jjcdutra2015.libraryapi.service;
+
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.repository.BookRepository;
+import com.jjcdutra2015.libraryapi.service.cache.BookIsbnCache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class BookSecondLevelCacheTest {
+
+    @Autowired
+    BookService service;
+
+    @Autowired
+    BookImportService importService;
+
+    @Autowired
+    BookRepository repository;
+
+    @Autowired
+    BookIsbnCache isbnCache;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    Statistics statistics;
+
+    @BeforeEach
+    public void setup() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        repository.deleteAll();
+        isbnCache.clear();
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    @DisplayName("Deve ler o livro do cache de segundo nivel sem consultar o banco")
+    public void readFromCacheTest() {
+        Book book = service.save(createBook("123"));
+        service.getById(book.getId());
+        statistics.clear();
+
+        assertThat(service.getById(book.getId())).isPresent();
+        assertThat(service.getById(book.getId())).isPresent();
+
+        CacheRegionStatistics region = statistics.getDomainDataRegionStatistics(Book.CACHE_REGION);
+        assertThat(region.getHitCount()).isEqualTo(2);
+        assertThat(region.getMissCount()).isZero();
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve atualizar o cache de segundo nivel ao alterar um livro")
+    public void updateInvalidatesCacheTest() {
+        Book book = service.save(createBook("123"));
+        service.getById(book.getId());
+
+        book.setTitle("Novo titulo");
+        service.update(book);
+        statistics.clear();
+
+        assertThat(service.getById(book.getId()).get().getTitle()).isEqualTo("Novo titulo");
+        assertThat(statistics.getDomainDataRegionStatistics(Book.CACHE_REGION).getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve remover o livro do cache de segundo nivel ao excluir")
+    public void deleteInvalidatesCacheTest() {
+        Book book = service.save(createBook("123"));
+        service.getById(book.getId());
+
+        service.delete(book);
+        statistics.clear();
+
+        assertThat(service.getById(book.getId())).isEmpty();
+        assertThat(statistics.getDomainDataRegionStatistics(Book.CACHE_REGION).getHitCount()).isZero();
+        assertThat(repository.findByIsbn("123")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve usar o cache de consultas na busca por isbn e invalidar apos alteracao")
+    public void isbnQueryCacheTest() {
+        Book book = service.save(createBook("123"));
+        statistics.clear();
+
+        assertThat(repository.findByIsbn("123")).isPresent();
+        assertThat(repository.findByIsbn("123")).isPresent();
+
+        CacheRegionStatistics region = statistics.getQueryRegionStatistics(Book.ISBN_QUERY_CACHE_REGION);
+        assertThat(region.getMissCount()).isEqualTo(1);
+        assertThat(region.getHitCount()).isEqualTo(1);
+
+        book.setIsbn("456");
+        service.update(book);
+
+        assertThat(repository.findByIsbn("123")).isEmpty();
+        assertThat(repository.findByIsbn("456")).map(Book::getId).contains(book.getId());
+    }
+
+    @Test
+    @DisplayName("Deve invalidar o cache de consultas ao importar livros")
+    public void importInvalidatesQueryCacheTest() {
+        assertThat(repository.findByIsbn("123")).isEmpty();
+
+        importService.importBooks(Collections.singletonList(createBook("123")).iterator());
+
+        assertThat(repository.findByIsbn("123")).isPresent();
+    }
+
+    private Book createBook(String isbn) {
+        return Book.builder().title("As aventuras").author("Fulano").isbn(isbn).build();
+    }
+}
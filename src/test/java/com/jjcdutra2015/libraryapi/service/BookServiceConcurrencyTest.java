@@ -0,0 +1,84 @@
+package com.jjcdutra2015.libraryapi.service;
+
+import com.jjcdutra2015.libraryapi.exception.BusinessException;
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.repository.BookRepository;
+import com.jjcdutra2015.libraryapi.service.cache.BookIsbnCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class BookServiceConcurrencyTest {
+
+    static final int THREADS = 16;
+
+    @Autowired
+    BookService service;
+
+    @Autowired
+    BookRepository repository;
+
+    @Autowired
+    BookIsbnCache isbnCache;
+
+    @AfterEach
+    public void cleanUp() {
+        repository.deleteAll();
+        isbnCache.clear();
+    }
+
+    @Test
+    @DisplayName("Deve cadastrar apenas um livro quando o mesmo isbn for criado em paralelo")
+    public void parallelDuplicateCreateTest() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                Book book = Book.builder().title("Titulo " + i).author("Autor").isbn("concorrente").build();
+                Callable<Boolean> create = () -> {
+                    start.await();
+                    try {
+                        service.save(book);
+                        return true;
+                    } catch (BusinessException e) {
+                        assertThat(e).hasMessage("Isbn já cadastrado");
+                        return false;
+                    }
+                };
+                results.add(executor.submit(create));
+            }
+            start.countDown();
+
+            int created = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get()) {
+                    created++;
+                }
+            }
+
+            assertThat(created).isEqualTo(1);
+            assertThat(repository.findAll()).hasSize(1);
+        } catch (ExecutionException e) {
+            throw new AssertionError(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
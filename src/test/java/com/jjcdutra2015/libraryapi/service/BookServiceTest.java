@@ -3,17 +3,25 @@ package com.jjcdutra2015.libraryapi.service;
 import com.jjcdutra2015.libraryapi.exception.BusinessException;
 import com.jjcdutra2015.libraryapi.model.entity.Book;
 import com.jjcdutra2015.libraryapi.model.entity.repository.BookRepository;
+import com.jjcdutra2015.libraryapi.service.cache.BookIsbnCache;
+import com.jjcdutra2015.libraryapi.service.cache.CountCache;
 import com.jjcdutra2015.libraryapi.service.impl.BookServiceImpl;
+import com.jjcdutra2015.libraryapi.service.search.BookSearchIndex;
 import org.assertj.core.api.Assertions;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.*;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.sql.SQLException;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -27,12 +35,18 @@ public class BookServiceTest {
 
     BookService service;
 
+    BookIsbnCache isbnCache;
+
+    BookSearchIndex searchIndex;
+
     @MockBean
     BookRepository repository;
 
     @BeforeEach
     public void setup() {
-        this.service = new BookServiceImpl(repository);
+        this.isbnCache = new BookIsbnCache(100, Duration.ofMinutes(10));
+        this.searchIndex = new BookSearchIndex();
+        this.service = new BookServiceImpl(repository, isbnCache, searchIndex, new CountCache(100, Duration.ofSeconds(30)));
     }
 
     @Test
@@ -41,7 +55,7 @@ public class BookServiceTest {
         //cenario
         Book book = createValidBook();
 
-        when(repository.save(book)).thenReturn(
+        when(repository.saveAndFlush(book)).thenReturn(
                 Book.builder().id(1l).title("As aventuras").author("Fulano").isbn("123").build()
         );
 
@@ -62,7 +76,8 @@ public class BookServiceTest {
         Book book = createValidBook();
 
         //execucao
-        when(repository.existsByIsbn(anyString())).thenReturn(true);
+        when(repository.saveAndFlush(book)).thenThrow(new DataIntegrityViolationException("duplicate",
+                new ConstraintViolationException("duplicate", new SQLException(), "PUBLIC.UK_BOOK_ISBN_INDEX_1")));
         Throwable exception = Assertions.catchThrowable(() -> service.save(book));
 
         //verificacao
@@ -70,7 +85,8 @@ public class BookServiceTest {
                 .isInstanceOf(BusinessException.class)
                 .hasMessage("Isbn já cadastrado");
 
-        verify(repository, never()).save(book);
+        verify(repository, never()).existsByIsbn(anyString());
+        assertThat(isbnCache.size()).isEqualTo(0);
     }
 
     @Test
@@ -164,9 +180,8 @@ public class BookServiceTest {
         PageRequest request = PageRequest.of(0, 10);
 
         List<Book> list = Arrays.asList(book);
-        PageImpl page = new PageImpl(list, request, 1);
-        when(repository.findAll(any(Example.class), any(Pageable.class)))
-                .thenReturn(page);
+        when(repository.findSlice(any(Example.class), any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(list, request, false));
 
         Page<Book> result = service.find(book, request);
 
@@ -174,6 +189,57 @@ public class BookServiceTest {
         assertThat(result.getContent()).isEqualTo(list);
         assertThat(result.getPageable().getPageNumber()).isEqualTo(0);
         assertThat(result.getPageable().getPageSize()).isEqualTo(10);
+        verify(repository, never()).count(any(Example.class));
+    }
+
+    @Test
+    @DisplayName("Deve contar os livros filtrados uma unica vez enquanto a contagem estiver em cache")
+    public void findBookCachesCountTest() {
+        Book book = createValidBook();
+        PageRequest request = PageRequest.of(0, 1);
+        when(repository.findSlice(any(Example.class), any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(Arrays.asList(book), request, true));
+        when(repository.count(any(Example.class))).thenReturn(5L);
+
+        Page<Book> first = service.find(book, request);
+        Page<Book> second = service.find(createValidBook(), request);
+
+        assertThat(first.getTotalElements()).isEqualTo(5);
+        assertThat(second.getTotalElements()).isEqualTo(5);
+        verify(repository, times(1)).count(any(Example.class));
+    }
+
+    @Test
+    @DisplayName("Deve contar separadamente os livros filtrados por id")
+    public void findBookCountsIdFilterSeparatelyTest() {
+        Book byId = createValidBook();
+        byId.setId(1L);
+        PageRequest request = PageRequest.of(0, 1);
+        when(repository.findSlice(any(Example.class), any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(Arrays.asList(byId), request, true));
+        when(repository.count(any(Example.class))).thenReturn(1L, 5L);
+
+        Page<Book> filtered = service.find(byId, request);
+        Page<Book> unfiltered = service.find(createValidBook(), request);
+
+        assertThat(filtered.getTotalElements()).isEqualTo(1);
+        assertThat(unfiltered.getTotalElements()).isEqualTo(5);
+        verify(repository, times(2)).count(any(Example.class));
+    }
+
+    @Test
+    @DisplayName("Deve filtrar livros sem contar o total")
+    public void findBookSliceTest() {
+        Book book = createValidBook();
+        PageRequest request = PageRequest.of(0, 10);
+        when(repository.findSlice(any(Example.class), any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(Arrays.asList(book), request, true));
+
+        Slice<Book> result = service.findSlice(book, request);
+
+        assertThat(result.getContent()).isEqualTo(Arrays.asList(book));
+        assertThat(result.hasNext()).isTrue();
+        verify(repository, never()).count(any(Example.class));
     }
 
     @Test
@@ -191,6 +257,165 @@ public class BookServiceTest {
         verify(repository, times(1)).findByIsbn(isbn);
     }
 
+    @Test
+    @DisplayName("Deve obter um livro pelo isbn a partir do cache")
+    public void getBookByIsbnFromCacheTest() {
+        String isbn = "1234";
+        when(repository.findByIsbn(isbn)).thenReturn(Optional.of(Book.builder().id(1l).isbn(isbn).build()));
+        when(repository.findById(1l)).thenReturn(Optional.of(Book.builder().id(1l).isbn(isbn).build()));
+
+        service.getBookByIsbn(isbn);
+        Optional<Book> book = service.getBookByIsbn(isbn);
+
+        assertThat(book.isPresent()).isTrue();
+        assertThat(book.get().getId()).isEqualTo(1l);
+        assertThat(isbnCache.stats().hitCount()).isEqualTo(1);
+        assertThat(isbnCache.stats().missCount()).isEqualTo(1);
+
+        verify(repository, times(1)).findByIsbn(isbn);
+    }
+
+    @Test
+    @DisplayName("Deve devolver o estado atual do livro encontrado pelo cache de isbn")
+    public void getBookByIsbnReturnsCurrentStateTest() {
+        String isbn = "1234";
+        when(repository.findByIsbn(isbn)).thenReturn(Optional.of(Book.builder().id(1l).isbn(isbn).available(true).build()));
+        service.getBookByIsbn(isbn);
+
+        when(repository.findById(1l)).thenReturn(Optional.of(Book.builder().id(1l).isbn(isbn).available(false).build()));
+        Optional<Book> book = service.getBookByIsbn(isbn);
+
+        assertThat(book.get().getAvailable()).isFalse();
+        verify(repository, times(1)).findByIsbn(isbn);
+    }
+
+    @Test
+    @DisplayName("Não deve manter em cache um isbn inexistente")
+    public void getBookByIsbnNotFoundIsNotCachedTest() {
+        String isbn = "1234";
+        when(repository.findByIsbn(isbn)).thenReturn(Optional.empty());
+
+        service.getBookByIsbn(isbn);
+        Optional<Book> book = service.getBookByIsbn(isbn);
+
+        assertThat(book.isPresent()).isFalse();
+        assertThat(isbnCache.size()).isEqualTo(0);
+
+        verify(repository, times(2)).findByIsbn(isbn);
+    }
+
+    @Test
+    @DisplayName("Deve atualizar o cache de isbn ao atualizar um livro")
+    public void updateRefreshesIsbnCacheTest() {
+        Book cachedBook = Book.builder().id(1l).title("Antigo").isbn("123").build();
+        when(repository.findByIsbn("123")).thenReturn(Optional.of(cachedBook));
+        service.getBookByIsbn("123");
+
+        Book updatedBook = Book.builder().id(1l).title("Novo").isbn("321").build();
+        when(repository.save(updatedBook)).thenReturn(updatedBook);
+        when(repository.findById(1l)).thenReturn(Optional.of(updatedBook));
+        service.update(updatedBook);
+
+        when(repository.findByIsbn("123")).thenReturn(Optional.empty());
+        assertThat(service.getBookByIsbn("123").isPresent()).isFalse();
+        assertThat(service.getBookByIsbn("321").get().getTitle()).isEqualTo("Novo");
+
+        verify(repository, never()).findByIsbn("321");
+    }
+
+    @Test
+    @DisplayName("Deve remover o livro do cache de isbn ao deletar")
+    public void deleteEvictsIsbnCacheTest() {
+        Book book = Book.builder().id(1l).isbn("123").build();
+        when(repository.findByIsbn("123")).thenReturn(Optional.of(book));
+        service.getBookByIsbn("123");
+
+        service.delete(book);
+
+        when(repository.findByIsbn("123")).thenReturn(Optional.empty());
+        assertThat(service.getBookByIsbn("123").isPresent()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve filtrar livros a partir de um cursor")
+    public void findBookAfterTest() {
+        Book book = createValidBook();
+        Slice<Book> slice = new SliceImpl<>(Arrays.asList(book), PageRequest.of(0, 10), false);
+        when(repository.findAfter(0L, book.getTitle(), book.getAuthor(), book.getIsbn(), PageRequest.of(0, 10)))
+                .thenReturn(slice);
+
+        Slice<Book> result = service.find(book, null, 10);
+
+        assertThat(result.getContent()).isEqualTo(Arrays.asList(book));
+        assertThat(result.hasNext()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve repassar violacao de integridade que nao seja de isbn duplicado")
+    public void saveOtherIntegrityViolationTest() {
+        Book book = createValidBook();
+
+        when(repository.saveAndFlush(book)).thenThrow(new DataIntegrityViolationException("not null",
+                new ConstraintViolationException("not null", new SQLException(), null)));
+        Throwable exception = Assertions.catchThrowable(() -> service.save(book));
+
+        assertThat(exception).isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    @DisplayName("Deve filtrar livros sem considerar a disponibilidade")
+    public void findIgnoresAvailabilityTest() {
+        Book book = createValidBook();
+        when(repository.findSlice(any(Example.class), any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(Arrays.asList(), PageRequest.of(0, 10), false));
+
+        service.find(book, PageRequest.of(0, 10));
+
+        ArgumentCaptor<Example> example = ArgumentCaptor.forClass(Example.class);
+        verify(repository).findSlice(example.capture(), any(Pageable.class));
+        assertThat(example.getValue().getMatcher().isIgnoredPath("available")).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve paginar os livros disponiveis")
+    public void findAvailableTest() {
+        PageRequest request = PageRequest.of(0, 10);
+        Page<Book> page = new PageImpl<>(Arrays.asList(createValidBook()), request, 1);
+        when(repository.findByAvailableTrue(request)).thenReturn(page);
+
+        Page<Book> result = service.findAvailable(request);
+
+        assertThat(result).isSameAs(page);
+    }
+
+    @Test
+    @DisplayName("Deve buscar livros pelo indice textual mantendo a ordem de relevancia")
+    public void searchTest() {
+        Book first = Book.builder().id(1L).title("Aventuras").author("Fulano").isbn("1").build();
+        Book second = Book.builder().id(2L).title("Outras historias").author("Aventureiro").isbn("2").build();
+        searchIndex.index(Arrays.asList(first, second));
+        when(repository.findAllById(any())).thenReturn(Arrays.asList(second, first));
+
+        Page<Book> result = service.search("aventur", PageRequest.of(0, 10));
+
+        assertThat(result.getContent()).isEqualTo(Arrays.asList(first, second));
+        assertThat(result.getTotalElements()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve manter o indice textual sincronizado ao salvar e deletar")
+    public void searchIndexSyncTest() {
+        Book book = createValidBook();
+        Book savedBook = Book.builder().id(1l).title("As aventuras").author("Fulano").isbn("123").build();
+        when(repository.saveAndFlush(book)).thenReturn(savedBook);
+
+        service.save(book);
+        assertThat(searchIndex.search("aventuras", PageRequest.of(0, 10)).getIds()).isEqualTo(Arrays.asList(1l));
+
+        service.delete(savedBook);
+        assertThat(searchIndex.search("aventuras", PageRequest.of(0, 10)).getTotalHits()).isEqualTo(0);
+    }
+
     private Book createValidBook() {
         return Book.builder().title("As aventuras").author("Fulano").isbn("123").build();
     }
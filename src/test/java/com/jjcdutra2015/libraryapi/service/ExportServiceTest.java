@@ -0,0 +1,136 @@
+package com.jjcdutra2015.libraryapi.service;
+
+import com.jjcdutra2015.libraryapi.api.dto.LoanFilterDTO;
+import com.jjcdutra2015.libraryapi.model.entity.ArchivedLoan;
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.Loan;
+import com.jjcdutra2015.libraryapi.model.entity.repository.BookExampleRepository;
+import com.jjcdutra2015.libraryapi.model.entity.repository.BookRepository;
+import com.jjcdutra2015.libraryapi.service.cache.CountCache;
+import com.jjcdutra2015.libraryapi.service.impl.ExportServiceImpl;
+import com.jjcdutra2015.libraryapi.service.impl.LoanServiceImpl;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+@Import({ExportServiceImpl.class, LoanServiceImpl.class, CountCache.class})
+public class ExportServiceTest {
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Autowired
+    ExportService service;
+
+    @Autowired
+    LoanService loanService;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Test
+    @DisplayName("Deve percorrer os livros sem mante-los no contexto de persistencia")
+    public void forEachBookTest() {
+        for (int i = 1; i <= 5; i++) {
+            entityManager.persist(Book.builder().title("Livro " + i).author(i % 2 == 0 ? "Fulano" : "Beltrano")
+                    .isbn(String.valueOf(i)).build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        List<Book> exported = new ArrayList<>();
+        service.forEachBook(Book.builder().author("fulano").build(), exported::add);
+
+        assertThat(exported).extracting(Book::getIsbn).containsExactly("2", "4");
+        assertThat(exported).noneMatch(book -> entityManager.getEntityManager().contains(book));
+    }
+
+    @Test
+    @DisplayName("Deve percorrer os emprestimos filtrados com seus livros")
+    public void forEachLoanTest() {
+        Book book = entityManager.persist(Book.builder().title("Livro").author("Fulano").isbn("123").build());
+        Book other = entityManager.persist(Book.builder().title("Outro").author("Fulano").isbn("456").build());
+        entityManager.persist(Loan.builder().book(book).customer("Cicrano").loanDate(LocalDate.now()).build());
+        entityManager.persist(Loan.builder().book(other).customer("Beltrano").loanDate(LocalDate.now()).build());
+        entityManager.flush();
+        entityManager.clear();
+
+        List<Loan> exported = new ArrayList<>();
+        service.forEachLoan(LoanFilterDTO.builder().customer("Cicrano").build(), exported::add);
+
+        assertThat(exported).hasSize(1);
+        assertThat(exported.get(0).getBook().getTitle()).isEqualTo("Livro");
+        assertThat(entityManager.getEntityManager().contains(exported.get(0))).isFalse();
+        assertThat(entityManager.getEntityManager().contains(exported.get(0).getBook())).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve exportar os mesmos livros que a listagem para o mesmo filtro, inclusive o id")
+    public void forEachBookMatchesListTest() {
+        Book book = entityManager.persist(Book.builder().title("Livro").author("Fulano").isbn("1").build());
+        entityManager.persist(Book.builder().title("Livro").author("Fulano").isbn("2").build());
+        entityManager.flush();
+        entityManager.clear();
+
+        for (Book filter : Arrays.asList(Book.builder().id(book.getId()).build(), Book.builder().author("").build(),
+                Book.builder().title("LIVRO").isbn("2").build())) {
+            List<Book> exported = new ArrayList<>();
+            service.forEachBook(filter, exported::add);
+
+            List<Book> listed = bookRepository.findSlice(BookExampleRepository.filter(filter),
+                    Pageable.unpaged()).getContent();
+            assertThat(exported).extracting(Book::getId)
+                    .containsExactlyElementsOf(listed.stream().map(Book::getId).sorted().collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    @DisplayName("Deve exportar os mesmos emprestimos que a listagem para o mesmo filtro")
+    public void forEachLoanMatchesListTest() {
+        Book book = entityManager.persist(Book.builder().title("Livro").author("Fulano").isbn("123").build());
+        Book other = entityManager.persist(Book.builder().title("Outro").author("Fulano").isbn("456").build());
+        // More than one export page, so the keyset paging is covered too
+        for (int i = 0; i <= ExportServiceImpl.LOAN_PAGE_SIZE; i++) {
+            entityManager.persist(Loan.builder().book(i % 2 == 0 ? book : other).customer(i % 3 == 0 ? "Cicrano" : "Beltrano")
+                    .loanDate(LocalDate.now()).returned(true).build());
+        }
+        entityManager.persist(ArchivedLoan.builder().id(1_000_000L).book(other).customer("Cicrano").loanDate(LocalDate.now()).build());
+        entityManager.flush();
+        entityManager.clear();
+
+        List<LoanFilterDTO> filters = Arrays.asList(
+                LoanFilterDTO.builder().build(),
+                LoanFilterDTO.builder().isbn("").customer("Cicrano").build(),
+                LoanFilterDTO.builder().isbn("123").customer("Cicrano").build(),
+                LoanFilterDTO.builder().isbn("456").customer("Cicrano").includeArchived(true).build());
+        for (LoanFilterDTO filter : filters) {
+            List<Long> exported = new ArrayList<>();
+            service.forEachLoan(filter, loan -> exported.add(loan.getId()));
+
+            List<Long> listed = loanService.find(filter, PageRequest.of(0, 2000, Sort.by("id"))).getContent().stream()
+                    .map(Loan::getId)
+                    .collect(Collectors.toList());
+            assertThat(exported).as(filter.toString()).isNotEmpty().containsExactlyElementsOf(listed);
+        }
+    }
+}
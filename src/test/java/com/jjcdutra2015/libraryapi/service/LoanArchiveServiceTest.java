@@ -0,0 +1,110 @@
+package com.jjcdutra2015.libraryapi.service;
+
+import com.jjcdutra2015.libraryapi.model.entity.ArchivedLoan;
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.Loan;
+import com.jjcdutra2015.libraryapi.model.entity.repository.ArchivedLoanRepository;
+import com.jjcdutra2015.libraryapi.model.entity.repository.LoanRepository;
+import com.jjcdutra2015.libraryapi.service.impl.LoanArchiveServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+public class LoanArchiveServiceTest {
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    ArchivedLoanRepository archivedLoanRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    LoanArchiveService service;
+    MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        service = new LoanArchiveServiceImpl(loanRepository, meterRegistry, transactionManager, 365, 2);
+    }
+
+    @Test
+    @DisplayName("Deve mover em blocos os emprestimos devolvidos antigos para o arquivo")
+    public void archiveTest() {
+        Loan oldest = createLoan("001", "Fulano", 500, true);
+        Loan older = createLoan("002", "Cicrano", 450, true);
+        Loan old = createLoan("003", "Fulano", 400, true);
+        Loan recent = createLoan("004", "Fulano", 10, true);
+        Loan active = createLoan("005", "Fulano", 400, false);
+
+        int archived = service.archive();
+        entityManager.clear();
+
+        assertThat(archived).isEqualTo(3);
+        assertThat(loanRepository.findAll()).extracting(Loan::getId).containsExactlyInAnyOrder(recent.getId(), active.getId());
+        assertThat(archivedLoanRepository.findAll()).extracting(ArchivedLoan::getId)
+                .containsExactlyInAnyOrder(oldest.getId(), older.getId(), old.getId());
+        assertThat(archivedLoanRepository.findById(oldest.getId()).get().toLoan())
+                .satisfies(loan -> {
+                    assertThat(loan.getCustomer()).isEqualTo("Fulano");
+                    assertThat(loan.getBook().getIsbn()).isEqualTo("001");
+                    assertThat(loan.getLoanDate()).isEqualTo(oldest.getLoanDate());
+                    assertThat(loan.getReturned()).isTrue();
+                });
+
+        assertThat(meterRegistry.counter("library.loans.archive.loans").count()).isEqualTo(3);
+        assertThat(meterRegistry.timer("library.loans.archive").count()).isEqualTo(1);
+        assertThat(meterRegistry.get("library.loans.archive.last.loans").gauge().value()).isEqualTo(3);
+        assertThat(meterRegistry.get("library.loans.hot.rows").gauge().value()).isEqualTo(2);
+        assertThat(meterRegistry.get("library.loans.archive.last.shrink").gauge().value()).isEqualTo(0.6);
+
+        assertThat(service.archive()).isZero();
+        assertThat(meterRegistry.get("library.loans.archive.last.shrink").gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve buscar no arquivo pelo isbn ou cliente em ordem de id")
+    public void searchArchiveTest() {
+        Loan first = createLoan("001", "Cicrano", 500, true);
+        Loan second = createLoan("002", "Fulano", 450, true);
+        createLoan("003", "Beltrano", 400, true);
+        service.archive();
+        entityManager.clear();
+
+        assertThat(archivedLoanRepository.findFirst("001", "Fulano", null, 10)).extracting(ArchivedLoan::getId)
+                .containsExactly(first.getId(), second.getId());
+        assertThat(archivedLoanRepository.findFirst("001", "Fulano", first.getId(), 10)).extracting(ArchivedLoan::getId)
+                .containsExactly(second.getId());
+        assertThat(archivedLoanRepository.findFirst(null, null, null, 2)).hasSize(2);
+        assertThat(archivedLoanRepository.countSearch("001", "Fulano")).isEqualTo(2);
+        assertThat(archivedLoanRepository.countSearch("001", "Cicrano")).isEqualTo(1);
+        assertThat(archivedLoanRepository.countSearch(null, "Fulano")).isEqualTo(1);
+    }
+
+    private Loan createLoan(String isbn, String customer, int daysAgo, boolean returned) {
+        Book book = entityManager.persist(Book.builder().title("Livro " + isbn).author("Fulano").isbn(isbn).build());
+        return entityManager.persist(Loan.builder().book(book).customer(customer)
+                .loanDate(LocalDate.now().minusDays(daysAgo)).returned(returned).build());
+    }
+}
@@ -0,0 +1,128 @@
+package com.jjcdutra2015.libraryapi.service;
+
+import com.jjcdutra2015.libraryapi.api.dto.LoanBatchItemDTO;
+import com.jjcdutra2015.libraryapi.api.dto.LoanBatchResultDTO;
+import com.jjcdutra2015.libraryapi.api.dto.LoanReturnDTO;
+import com.jjcdutra2015.libraryapi.api.dto.LoandDTO;
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.Loan;
+import com.jjcdutra2015.libraryapi.model.entity.repository.BookRepository;
+import com.jjcdutra2015.libraryapi.model.entity.repository.LoanRepository;
+import com.jjcdutra2015.libraryapi.service.cache.BookIsbnCache;
+import com.jjcdutra2015.libraryapi.service.cache.CountCache;
+import com.jjcdutra2015.libraryapi.service.impl.BookServiceImpl;
+import com.jjcdutra2015.libraryapi.service.impl.LoanBatchServiceImpl;
+import com.jjcdutra2015.libraryapi.service.search.BookSearchIndex;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+@Import({LoanBatchServiceImpl.class, BookServiceImpl.class, BookIsbnCache.class, BookSearchIndex.class, CountCache.class})
+public class LoanBatchServiceTest {
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    LoanBatchService service;
+
+    @Test
+    @DisplayName("Deve emprestar livros em lote com uma unica consulta de isbn")
+    public void checkoutTest() {
+        Book available = entityManager.persist(Book.builder().title("Livro 1").author("Autor").isbn("001").build());
+        entityManager.persist(Book.builder().title("Livro 2").author("Autor").isbn("002").available(false).build());
+        Book other = entityManager.persist(Book.builder().title("Livro 3").author("Autor").isbn("003").build());
+        entityManager.flush();
+
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        LoanBatchResultDTO result = service.checkout(Arrays.asList(
+                LoandDTO.builder().isbn("001").customer("Fulano").build(),
+                LoandDTO.builder().isbn("002").customer("Fulano").build(),
+                LoandDTO.builder().isbn("999").customer("Fulano").build(),
+                LoandDTO.builder().isbn("003").build(),
+                LoandDTO.builder().isbn("001").customer("Cicrano").build(),
+                LoandDTO.builder().isbn("003").customer("Cicrano").build()
+        ));
+
+        assertThat(result.getSucceeded()).isEqualTo(2);
+        assertThat(result.getFailed()).isEqualTo(4);
+        assertThat(result.getItems()).extracting(LoanBatchItemDTO::getStatus).containsExactly(
+                LoanBatchItemDTO.Status.CREATED,
+                LoanBatchItemDTO.Status.ALREADY_LOANED,
+                LoanBatchItemDTO.Status.NOT_FOUND,
+                LoanBatchItemDTO.Status.INVALID,
+                LoanBatchItemDTO.Status.ALREADY_LOANED,
+                LoanBatchItemDTO.Status.CREATED);
+        assertThat(result.getItems().get(0).getId()).isNotNull();
+        assertThat(result.getItems().get(5).getId()).isNotNull();
+
+        assertThat(statistics.getQueryExecutionCount()).isEqualTo(1);
+        assertThat(loanRepository.count()).isEqualTo(2);
+        assertThat(bookRepository.findById(available.getId()).get().getAvailable()).isFalse();
+        assertThat(bookRepository.findById(other.getId()).get().getAvailable()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve devolver emprestimos em lote liberando os livros")
+    public void updateReturnsTest() {
+        Book book = entityManager.persist(Book.builder().title("Livro 1").author("Autor").isbn("001").available(false).build());
+        Book reloaned = entityManager.persist(Book.builder().title("Livro 2").author("Autor").isbn("002").available(false).build());
+        Loan loan = entityManager.persist(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build());
+        Loan oldLoan = entityManager.persist(Loan.builder().book(reloaned).customer("Fulano")
+                .loanDate(LocalDate.now().minusDays(10)).returned(true).build());
+        entityManager.persist(Loan.builder().book(reloaned).customer("Cicrano").loanDate(LocalDate.now()).build());
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        LoanBatchResultDTO result = service.updateReturns(Arrays.asList(
+                LoanReturnDTO.builder().id(loan.getId()).returned(true).build(),
+                LoanReturnDTO.builder().id(oldLoan.getId()).returned(false).build(),
+                LoanReturnDTO.builder().id(999L).returned(true).build(),
+                LoanReturnDTO.builder().id(loan.getId()).build()
+        ));
+
+        assertThat(result.getSucceeded()).isEqualTo(1);
+        assertThat(result.getFailed()).isEqualTo(3);
+        assertThat(result.getItems()).extracting(LoanBatchItemDTO::getStatus).containsExactly(
+                LoanBatchItemDTO.Status.RETURNED,
+                LoanBatchItemDTO.Status.ALREADY_LOANED,
+                LoanBatchItemDTO.Status.NOT_FOUND,
+                LoanBatchItemDTO.Status.INVALID);
+        assertThat(result.getItems().get(0).getIsbn()).isEqualTo("001");
+        assertThat(statistics.getQueryExecutionCount()).isEqualTo(1);
+
+        entityManager.clear();
+        assertThat(loanRepository.findById(loan.getId()).get().getReturned()).isTrue();
+        assertThat(bookRepository.findById(book.getId()).get().getAvailable()).isTrue();
+        assertThat(bookRepository.findById(reloaned.getId()).get().getAvailable()).isFalse();
+    }
+}
@@ -2,22 +2,33 @@ package com.jjcdutra2015.libraryapi.service;
 
 import com.jjcdutra2015.libraryapi.api.dto.LoanFilterDTO;
 import com.jjcdutra2015.libraryapi.exception.BusinessException;
+import com.jjcdutra2015.libraryapi.model.entity.ArchivedLoan;
 import com.jjcdutra2015.libraryapi.model.entity.Book;
 import com.jjcdutra2015.libraryapi.model.entity.Loan;
+import com.jjcdutra2015.libraryapi.model.entity.repository.ArchivedLoanRepository;
+import com.jjcdutra2015.libraryapi.model.entity.repository.BookRepository;
 import com.jjcdutra2015.libraryapi.model.entity.repository.LoanRepository;
+import com.jjcdutra2015.libraryapi.service.cache.CountCache;
 import com.jjcdutra2015.libraryapi.service.impl.LoanServiceImpl;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.sql.SQLException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.List;
@@ -35,9 +46,15 @@ public class LoanServiceTest {
     @MockBean
     LoanRepository repository;
 
+    @MockBean
+    BookRepository bookRepository;
+
+    @MockBean
+    ArchivedLoanRepository archivedRepository;
+
     @BeforeEach
     public void setup() {
-        this.service = new LoanServiceImpl(repository);
+        this.service = new LoanServiceImpl(repository, bookRepository, archivedRepository, new CountCache(100, Duration.ofSeconds(30)));
     }
 
     @Test
@@ -48,11 +65,12 @@ public class LoanServiceTest {
 
         Loan loanSaved = Loan.builder().id(1l).book(book).customer("Fulano").loanDate(LocalDate.now()).build();
 
-        Mockito.when(repository.existsByBookAndNotReturned(book)).thenReturn(false);
-        Mockito.when(repository.save(loan)).thenReturn(loanSaved);
+        Mockito.when(bookRepository.findById(1l)).thenReturn(Optional.of(book));
+        Mockito.when(repository.saveAndFlush(loan)).thenReturn(loanSaved);
 
         loanSaved = service.save(loan);
 
+        assertThat(book.getAvailable()).isFalse();
         assertThat(loanSaved.getId()).isNotNull();
         assertThat(loanSaved.getBook()).isEqualTo(loan.getBook());
         assertThat(loanSaved.getCustomer()).isEqualTo(loan.getCustomer());
@@ -62,19 +80,36 @@ public class LoanServiceTest {
     @Test
     @DisplayName("Deve lançar erro ao emprestar um livro já emprestado")
     public void loanedBookSaveTest() {
-        Book book = Book.builder().id(1l).isbn("123").build();
         Loan loan = createLoan();
 
-        Mockito.when(repository.existsByBookAndNotReturned(book)).thenReturn(true);
+        Mockito.when(bookRepository.findById(1l)).thenReturn(Optional.of(loan.getBook()));
+        Mockito.when(repository.saveAndFlush(loan)).thenThrow(new DataIntegrityViolationException("duplicate",
+                new ConstraintViolationException("duplicate", new SQLException(), "PUBLIC.UK_LOAN_ACTIVE_BOOK_INDEX_2")));
 
         Throwable exception = catchThrowable(() -> service.save(loan));
 
-        Mockito.verify(repository, Mockito.never()).save(loan);
+        Mockito.verify(repository, Mockito.never()).existsByBookAndNotReturned(Mockito.any());
         assertThat(exception)
                 .isInstanceOf(BusinessException.class)
                 .hasMessage("Book already loaned");
     }
 
+    @Test
+    @DisplayName("Deve lançar erro ao emprestar um livro indisponivel sem consultar emprestimos")
+    public void unavailableBookSaveTest() {
+        Loan loan = createLoan();
+        loan.getBook().setAvailable(false);
+
+        Mockito.when(bookRepository.findById(1l)).thenReturn(Optional.of(loan.getBook()));
+
+        Throwable exception = catchThrowable(() -> service.save(loan));
+
+        assertThat(exception)
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Book already loaned");
+        Mockito.verifyNoInteractions(repository);
+    }
+
     @Test
     @DisplayName("Deve obter detalhes do emprestimo pelo id")
     public void findByIdTest() {
@@ -98,14 +133,35 @@ public class LoanServiceTest {
     public void updateTest() {
         Loan loan = createLoan();
         loan.setId(1L);
+        loan.syncActiveBookId();
         loan.setReturned(true);
 
-        Mockito.when(repository.save(Mockito.any(Loan.class))).thenReturn(loan);
+        Book book = Book.builder().id(1l).isbn("123").available(false).build();
+        Mockito.when(bookRepository.findById(1l)).thenReturn(Optional.of(book));
+        Mockito.when(repository.saveAndFlush(Mockito.any(Loan.class))).thenReturn(loan);
 
         Loan updatedLoan = service.update(loan);
 
         assertThat(updatedLoan.getReturned()).isTrue();
-        Mockito.verify(repository).save(loan);
+        assertThat(book.getAvailable()).isTrue();
+        Mockito.verify(repository).saveAndFlush(loan);
+    }
+
+    @Test
+    @DisplayName("Nao deve liberar o livro ao devolver de novo um emprestimo ja devolvido")
+    public void updateReturnedLoanAgainTest() {
+        Loan returnedLoan = createLoan();
+        returnedLoan.setId(1L);
+        returnedLoan.setReturned(true);
+        returnedLoan.syncActiveBookId();
+        Book book = Book.builder().id(1l).isbn("123").available(false).build();
+        Mockito.when(bookRepository.findById(1l)).thenReturn(Optional.of(book));
+        Mockito.when(repository.saveAndFlush(Mockito.any(Loan.class))).thenReturn(returnedLoan);
+
+        service.update(returnedLoan);
+
+        assertThat(book.getAvailable()).isFalse();
+        Mockito.verify(bookRepository, Mockito.never()).findById(Mockito.anyLong());
     }
 
     @Test
@@ -118,10 +174,9 @@ public class LoanServiceTest {
 
         List<Loan> list = Arrays.asList(loan);
         PageRequest pageRequest = PageRequest.of(0, 10);
-        Page page = new PageImpl<>(list, pageRequest, list.size());
-        Mockito.when(repository.findByBookIsbnOrCustomer(
+        Mockito.when(repository.searchSlice(
                         Mockito.anyString(), Mockito.anyString(), Mockito.any(PageRequest.class)))
-                .thenReturn(page);
+                .thenReturn(new SliceImpl<>(list, pageRequest, false));
 
         Page<Loan> result = service.find(dto, pageRequest);
 
@@ -131,6 +186,103 @@ public class LoanServiceTest {
         assertThat(result.getPageable().getPageNumber()).isEqualTo(0);
     }
 
+    @Test
+    @DisplayName("Deve contar os emprestimos filtrados somente quando ha mais paginas e guardar a contagem")
+    public void findLoanCountTest() {
+        LoanFilterDTO dto = LoanFilterDTO.builder().customer("Fulano").build();
+        PageRequest pageRequest = PageRequest.of(0, 1);
+        Mockito.when(repository.searchSlice(null, "Fulano", pageRequest))
+                .thenReturn(new SliceImpl<>(Arrays.asList(createLoan()), pageRequest, true));
+        Mockito.when(repository.countSearch(null, "Fulano")).thenReturn(3L);
+
+        Page<Loan> first = service.find(dto, pageRequest);
+        Page<Loan> second = service.find(dto, pageRequest);
+
+        assertThat(first.getTotalElements()).isEqualTo(3);
+        assertThat(second.getTotalElements()).isEqualTo(3);
+        Mockito.verify(repository, Mockito.times(1)).countSearch(null, "Fulano");
+    }
+
+    @Test
+    @DisplayName("Deve filtrar emprestimos sem contar o total")
+    public void findLoanSliceTest() {
+        LoanFilterDTO dto = LoanFilterDTO.builder().customer("Fulano").build();
+        PageRequest pageRequest = PageRequest.of(0, 10);
+        Loan loan = createLoan();
+        Mockito.when(repository.searchSlice(null, "Fulano", pageRequest))
+                .thenReturn(new SliceImpl<>(Arrays.asList(loan), pageRequest, false));
+
+        Slice<Loan> result = service.findSlice(dto, pageRequest);
+
+        assertThat(result.getContent()).containsExactly(loan);
+        assertThat(result.hasNext()).isFalse();
+        Mockito.verify(repository, Mockito.never()).countSearch(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("Deve filtrar emprestimos a partir de um cursor")
+    public void findLoanAfterTest() {
+        LoanFilterDTO dto = LoanFilterDTO.builder().customer("Fulano").isbn("123").build();
+
+        Loan loan = createLoan();
+        loan.setId(11L);
+
+        Slice<Loan> slice = new SliceImpl<>(Arrays.asList(loan), PageRequest.of(0, 10), true);
+        Mockito.when(repository.searchAfter(10L, "123", "Fulano", PageRequest.of(0, 10)))
+                .thenReturn(slice);
+
+        Slice<Loan> result = service.find(dto, 10L, 10);
+
+        assertThat(result.getContent()).containsExactly(loan);
+        assertThat(result.hasNext()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve juntar os emprestimos arquivados em ordem de id quando pedido")
+    public void findLoanIncludingArchivedTest() {
+        LoanFilterDTO dto = LoanFilterDTO.builder().customer("Fulano").includeArchived(true).build();
+        Book book = Book.builder().id(1L).isbn("123").build();
+        Loan hot = Loan.builder().id(5L).book(book).customer("Fulano").build();
+        ArchivedLoan first = ArchivedLoan.builder().id(2L).book(book).customer("Fulano").build();
+        ArchivedLoan second = ArchivedLoan.builder().id(7L).book(book).customer("Fulano").build();
+        Mockito.when(repository.searchSlice(null, "Fulano", PageRequest.of(0, 3)))
+                .thenReturn(new SliceImpl<>(Arrays.asList(hot), PageRequest.of(0, 3), false));
+        Mockito.when(archivedRepository.findFirst(null, "Fulano", null, 3)).thenReturn(Arrays.asList(first, second));
+        Mockito.when(repository.countSearch(null, "Fulano")).thenReturn(1L);
+        Mockito.when(archivedRepository.countSearch(null, "Fulano")).thenReturn(2L);
+
+        Page<Loan> result = service.find(dto, PageRequest.of(0, 2));
+
+        assertThat(result.getContent()).extracting(Loan::getId).containsExactly(2L, 5L);
+        assertThat(result.getContent().get(0).getReturned()).isTrue();
+        assertThat(result.getTotalElements()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Deve recusar ordenar por outra propriedade que nao o id quando incluir os arquivados")
+    public void findLoanIncludingArchivedSortedTest() {
+        LoanFilterDTO dto = LoanFilterDTO.builder().customer("Fulano").includeArchived(true).build();
+
+        Throwable exception = catchThrowable(() -> service.findSlice(dto, PageRequest.of(0, 2, Sort.by("loanDate"))));
+
+        assertThat(exception).isInstanceOf(BusinessException.class)
+                .hasMessage("Loans including archived ones can only be sorted by id");
+        Mockito.verifyNoInteractions(archivedRepository);
+    }
+
+    @Test
+    @DisplayName("Deve ignorar o arquivo quando nao pedido")
+    public void findLoanWithoutArchivedTest() {
+        LoanFilterDTO dto = LoanFilterDTO.builder().customer("Fulano").build();
+        PageRequest pageRequest = PageRequest.of(0, 10);
+        Mockito.when(repository.searchAfter(0L, null, "Fulano", pageRequest))
+                .thenReturn(new SliceImpl<>(Arrays.asList(createLoan()), pageRequest, false));
+
+        service.find(dto, null, 10);
+
+        Mockito.verifyNoInteractions(archivedRepository);
+    }
+
     public static Loan createLoan() {
         Book book = Book.builder().id(1l).isbn("123").build();
         return Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build();
@@ -0,0 +1,150 @@
+package com.jjcdutra2015.libraryapi.service;
+
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import com.jjcdutra2015.libraryapi.model.entity.JobCheckpoint;
+import com.jjcdutra2015.libraryapi.model.entity.Loan;
+import com.jjcdutra2015.libraryapi.model.entity.OverdueNotice;
+import com.jjcdutra2015.libraryapi.model.entity.repository.JobCheckpointRepository;
+import com.jjcdutra2015.libraryapi.model.entity.repository.LoanRepository;
+import com.jjcdutra2015.libraryapi.model.entity.repository.OverdueNoticeRepository;
+import com.jjcdutra2015.libraryapi.service.impl.OverdueLoanServiceImpl;
+import com.jjcdutra2015.libraryapi.service.overdue.OverdueLoansEvent;
+import com.jjcdutra2015.libraryapi.service.overdue.OverdueNoticeListener;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Slice;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+public class OverdueLoanServiceTest {
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Autowired
+    LoanRepository repository;
+
+    @Autowired
+    JobCheckpointRepository checkpointRepository;
+
+    @Autowired
+    OverdueNoticeRepository noticeRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    OverdueLoanService service;
+    MeterRegistry meterRegistry;
+    List<OverdueLoansEvent> events;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        events = new ArrayList<>();
+        service = new OverdueLoanServiceImpl(repository, checkpointRepository,
+                event -> events.add((OverdueLoansEvent) event), meterRegistry, transactionManager, 3, 2);
+    }
+
+    @Test
+    @DisplayName("Deve processar os emprestimos atrasados em blocos retomando do ultimo ponto")
+    public void scanTest() {
+        Loan oldest = createLoan("001", 10, false);
+        Loan older = createLoan("002", 8, false);
+        Loan old = createLoan("003", 5, false);
+        createLoan("004", 9, true);
+        createLoan("005", 1, false);
+
+        int processed = service.scan();
+
+        assertThat(processed).isEqualTo(3);
+        assertThat(events).hasSize(2);
+        assertThat(processedIds()).containsExactly(oldest.getId(), older.getId(), old.getId());
+        JobCheckpoint checkpoint = checkpointRepository.findById("overdue-loan-scan").get();
+        assertThat(checkpoint.getLastId()).isEqualTo(old.getId());
+        assertThat(checkpoint.getLastDate()).isEqualTo(old.getLoanDate());
+
+        events.clear();
+        Loan late = createLoan("006", 4, false);
+
+        assertThat(service.scan()).isEqualTo(1);
+        assertThat(processedIds()).containsExactly(late.getId());
+
+        assertThat(meterRegistry.counter("library.overdue.scan.loans").count()).isEqualTo(4);
+        assertThat(meterRegistry.timer("library.overdue.scan").count()).isEqualTo(2);
+        assertThat(meterRegistry.get("library.overdue.scan.last.loans").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve registrar um aviso por emprestimo atrasado sem duplicar ao reprocessar")
+    public void scanRecordsNoticesTest() {
+        OverdueNoticeListener listener = new OverdueNoticeListener(noticeRepository);
+        service = new OverdueLoanServiceImpl(repository, checkpointRepository,
+                event -> listener.record((OverdueLoansEvent) event), meterRegistry, transactionManager, 3, 2);
+        Loan oldest = createLoan("001", 10, false);
+        Loan old = createLoan("002", 5, false);
+        createLoan("003", 9, true);
+        createLoan("004", 1, false);
+
+        service.scan();
+        checkpointRepository.deleteAll();
+        service.scan();
+        entityManager.clear();
+
+        assertThat(noticeRepository.findAll()).extracting(OverdueNotice::getLoanId)
+                .containsExactlyInAnyOrder(oldest.getId(), old.getId());
+        assertThat(noticeRepository.findById(oldest.getId())).hasValueSatisfying(notice -> {
+            assertThat(notice.getCustomer()).isEqualTo("Cicrano");
+            assertThat(notice.getBookId()).isEqualTo(oldest.getBook().getId());
+            assertThat(notice.getLoanDate()).isEqualTo(oldest.getLoanDate());
+            assertThat(notice.getDetectedAt()).isNotNull();
+        });
+    }
+
+    @Test
+    @DisplayName("Deve paginar os emprestimos atrasados por data e id")
+    public void findOverdueTest() {
+        Loan oldest = createLoan("001", 10, false);
+        Loan older = createLoan("002", 8, false);
+        Loan old = createLoan("003", 5, false);
+        createLoan("004", 1, false);
+
+        Slice<Loan> first = service.findOverdue(null, null, 2);
+        Slice<Loan> second = service.findOverdue(older.getLoanDate(), older.getId(), 2);
+
+        assertThat(first.getContent()).extracting(Loan::getId).containsExactly(oldest.getId(), older.getId());
+        assertThat(first.hasNext()).isTrue();
+        assertThat(second.getContent()).extracting(Loan::getId).containsExactly(old.getId());
+        assertThat(second.hasNext()).isFalse();
+    }
+
+    private List<Long> processedIds() {
+        return events.stream()
+                .flatMap(event -> event.getLoans().stream())
+                .map(Loan::getId)
+                .collect(Collectors.toList());
+    }
+
+    private Loan createLoan(String isbn, int daysAgo, boolean returned) {
+        Book book = entityManager.persist(Book.builder().title("Livro " + isbn).author("Fulano").isbn(isbn).build());
+        return entityManager.persist(Loan.builder().book(book).customer("Cicrano")
+                .loanDate(LocalDate.now().minusDays(daysAgo)).returned(returned).build());
+    }
+}
@@ -0,0 +1,92 @@
+package com.jjcdutra2015.libraryapi.service.search;
+
+import com.jjcdutra2015.libraryapi.model.entity.Book;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookSearchIndexTest {
+
+    BookSearchIndex index;
+
+    @BeforeEach
+    public void setup() {
+        index = new BookSearchIndex();
+        index.index(Arrays.asList(
+                Book.builder().id(1L).title("As aventuras de Tom Sawyer").author("Mark Twain").isbn("978-0143039563").build(),
+                Book.builder().id(2L).title("Dom Casmurro").author("Machado de Assis").isbn("978-8535911664").build(),
+                Book.builder().id(3L).title("Memorias postumas").author("Machado de Assis").isbn("978-8535910667").build(),
+                Book.builder().id(4L).title("Machado, uma biografia").author("Fulano").isbn("978-0000000001").build()
+        ));
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        index.close();
+    }
+
+    @Test
+    @DisplayName("Deve buscar livros por prefixo de palavra no titulo")
+    public void prefixSearchTest() {
+        BookSearchResult result = index.search("avent", PageRequest.of(0, 10));
+
+        assertThat(result.getIds()).containsExactly(1L);
+        assertThat(result.getTotalHits()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve ordenar por relevancia priorizando o titulo")
+    public void rankingTest() {
+        BookSearchResult result = index.search("machado", PageRequest.of(0, 10));
+
+        assertThat(result.getTotalHits()).isEqualTo(3);
+        assertThat(result.getIds().get(0)).isEqualTo(4L);
+        assertThat(result.getIds()).containsExactlyInAnyOrder(2L, 3L, 4L);
+    }
+
+    @Test
+    @DisplayName("Deve exigir todas as palavras informadas")
+    public void allWordsTest() {
+        BookSearchResult result = index.search("machado dom", PageRequest.of(0, 10));
+
+        assertThat(result.getIds()).containsExactly(2L);
+    }
+
+    @Test
+    @DisplayName("Deve buscar livros pelo prefixo do isbn")
+    public void isbnSearchTest() {
+        BookSearchResult result = index.search("978-85359", PageRequest.of(0, 10));
+
+        assertThat(result.getIds()).containsExactlyInAnyOrder(2L, 3L);
+    }
+
+    @Test
+    @DisplayName("Deve paginar os resultados da busca")
+    public void pagingTest() {
+        BookSearchResult firstPage = index.search("machado", PageRequest.of(0, 2));
+        BookSearchResult secondPage = index.search("machado", PageRequest.of(1, 2));
+
+        assertThat(firstPage.getIds()).hasSize(2);
+        assertThat(secondPage.getIds()).hasSize(1);
+        assertThat(secondPage.getTotalHits()).isEqualTo(3);
+        assertThat(firstPage.getIds()).doesNotContainAnyElementsOf(secondPage.getIds());
+    }
+
+    @Test
+    @DisplayName("Deve refletir atualizacoes e remocoes no indice")
+    public void updateAndDeleteTest() {
+        index.index(Book.builder().id(1L).title("Outro titulo").author("Mark Twain").isbn("978-0143039563").build());
+        index.delete(2L);
+
+        assertThat(index.search("aventuras", PageRequest.of(0, 10)).getIds()).isEmpty();
+        assertThat(index.search("outro", PageRequest.of(0, 10)).getIds()).containsExactly(1L);
+        assertThat(index.search("casmurro", PageRequest.of(0, 10)).getIds()).isEmpty();
+    }
+}